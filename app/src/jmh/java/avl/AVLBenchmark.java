@@ -0,0 +1,149 @@
+package avl;
+
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** throughput of the single tree operations, each applied to every word of
+ * an input, against TreeSet and HashSet doing the same work. One operation
+ * is one pass over the whole input, so scores are passes per second.
+ * bstInsert on sorted or reverse input builds a list, which is quadratic;
+ * that is the point of comparing it with avlInsert. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AVLBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  int size;
+
+  @Param({"sorted", "reverse", "random", "zipf", "prefix"})
+  String input;
+
+  String[] words;
+  AVL tree;
+  TreeSet<String> treeSet;
+  HashSet<String> hashSet;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    words = Inputs.generate(input, size);
+    tree = new AVL();
+    treeSet = new TreeSet<String>();
+    hashSet = new HashSet<String>();
+    for (String w : words) {
+      tree.avlInsert(w);
+      treeSet.add(w);
+      hashSet.add(w);
+    }
+  }
+
+  @Benchmark
+  public void search(Blackhole bh) {
+    for (String w : words) {
+      bh.consume(tree.search(w));
+    }
+  }
+
+  @Benchmark
+  public void treeSetContains(Blackhole bh) {
+    for (String w : words) {
+      bh.consume(treeSet.contains(w));
+    }
+  }
+
+  @Benchmark
+  public void hashSetContains(Blackhole bh) {
+    for (String w : words) {
+      bh.consume(hashSet.contains(w));
+    }
+  }
+
+  @Benchmark
+  public AVL bstInsert() {
+    AVL t = new AVL();
+    for (String w : words) {
+      t.bstInsert(w);
+    }
+    return t;
+  }
+
+  @Benchmark
+  public AVL avlInsert() {
+    AVL t = new AVL();
+    for (String w : words) {
+      t.avlInsert(w);
+    }
+    return t;
+  }
+
+  @Benchmark
+  public TreeSet<String> treeSetAdd() {
+    TreeSet<String> s = new TreeSet<String>();
+    for (String w : words) {
+      s.add(w);
+    }
+    return s;
+  }
+
+  @Benchmark
+  public HashSet<String> hashSetAdd() {
+    HashSet<String> s = new HashSet<String>();
+    for (String w : words) {
+      s.add(w);
+    }
+    return s;
+  }
+
+  @Benchmark
+  public AVL remove(Filled filled) {
+    for (String w : filled.words) {
+      filled.tree.remove(w);
+    }
+    return filled.tree;
+  }
+
+  @Benchmark
+  public TreeSet<String> treeSetRemove(Filled filled) {
+    for (String w : filled.words) {
+      filled.treeSet.remove(w);
+    }
+    return filled.treeSet;
+  }
+
+  /** fresh full trees for every removal pass. Building them is not timed,
+   * and a pass is long enough that per-invocation setup does not skew it. */
+  @State(Scope.Thread)
+  public static class Filled {
+    String[] words;
+    AVL tree;
+    TreeSet<String> treeSet;
+
+    @Setup(Level.Invocation)
+    public void fill(AVLBenchmark b) {
+      words = b.words;
+      tree = new AVL();
+      treeSet = new TreeSet<String>();
+      for (String w : words) {
+        tree.avlInsert(w);
+        treeSet.add(w);
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package avl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** generates the word lists the benchmarks run over. Every kind is
+ * deterministic for a given size, so runs can be compared. */
+final class Inputs {
+
+  // shared by every word of the "prefix" kind
+  private static final String COMMON_PREFIX =
+      "/usr/share/benchmarks/avl/inputs/with/a/rather/long/common/prefix/";
+
+  private static final long SEED = 0x5eed;
+
+  private Inputs() { }
+
+  /** n words of the given kind:
+   *  sorted  - distinct words in increasing order
+   *  reverse - distinct words in decreasing order
+   *  random  - distinct words in random order
+   *  zipf    - words drawn with Zipfian (s = 1) frequency from n / 10
+   *            distinct words, so most lines are repeats
+   *  prefix  - distinct words in random order, all sharing a long prefix */
+  static String[] generate(String kind, int n) {
+    Random rnd = new Random(SEED);
+    String[] words = new String[n];
+    switch (kind) {
+      case "sorted":
+      case "reverse":
+      case "random":
+        for (int i = 0; i < n; i++) {
+          words[i] = word(i);
+        }
+        break;
+      case "zipf":
+        return zipf(n, Math.max(1, n / 10), rnd);
+      case "prefix":
+        for (int i = 0; i < n; i++) {
+          words[i] = COMMON_PREFIX + word(i);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("unknown input kind " + kind);
+    }
+    Arrays.sort(words);
+    if (kind.equals("reverse")) {
+      for (int i = 0, j = n - 1; i < j; i++, j--) {
+        String t = words[i];
+        words[i] = words[j];
+        words[j] = t;
+      }
+    } else if (!kind.equals("sorted")) {
+      shuffle(words, rnd);
+    }
+    return words;
+  }
+
+  /* a word that is distinct for every i, spread over the alphabet */
+  private static String word(int i) {
+    // scramble i so that numeric order is not word order
+    int h = i * 0x9e3779b9;
+    return Integer.toString(h >>> 1, 36) + "-" + i;
+  }
+
+  /* n words drawn from `distinct` words, word k having weight 1 / (k + 1) */
+  private static String[] zipf(int n, int distinct, Random rnd) {
+    double[] cumulative = new double[distinct];
+    double total = 0;
+    for (int k = 0; k < distinct; k++) {
+      total += 1.0 / (k + 1);
+      cumulative[k] = total;
+    }
+    String[] words = new String[n];
+    for (int i = 0; i < n; i++) {
+      int k = Arrays.binarySearch(cumulative, rnd.nextDouble() * total);
+      words[i] = word(k < 0 ? -k - 1 : k);
+    }
+    return words;
+  }
+
+  private static void shuffle(String[] words, Random rnd) {
+    for (int i = words.length - 1; i > 0; i--) {
+      int j = rnd.nextInt(i + 1);
+      String t = words[i];
+      words[i] = words[j];
+      words[j] = t;
+    }
+  }
+}
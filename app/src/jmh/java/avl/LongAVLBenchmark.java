@@ -0,0 +1,68 @@
+package avl;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** throughput of inserting numeric ids, unboxed in LongAVL and boxed in
+ * GenericAVL and TreeSet. One operation inserts every id once. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LongAVLBenchmark {
+
+  @Param({"1000", "100000"})
+  int size;
+
+  long[] ids;
+
+  @Setup
+  public void setUp() {
+    Random rnd = new Random(0x5eed);
+    ids = new long[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = rnd.nextLong();
+    }
+  }
+
+  @Benchmark
+  public LongAVL longAvlInsert() {
+    LongAVL t = new LongAVL();
+    for (long id : ids) {
+      t.avlInsert(id);
+    }
+    return t;
+  }
+
+  @Benchmark
+  public GenericAVL<Long> genericAvlInsert() {
+    GenericAVL<Long> t = new GenericAVL<Long>();
+    for (long id : ids) {
+      t.avlInsert(id);
+    }
+    return t;
+  }
+
+  @Benchmark
+  public TreeSet<Long> treeSetAdd() {
+    TreeSet<Long> s = new TreeSet<Long>();
+    for (long id : ids) {
+      s.add(id);
+    }
+    return s;
+  }
+}
@@ -0,0 +1,93 @@
+package avl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** throughput of the Unique counting pipelines over in-memory lines, so
+ * that only the counting is measured and not the file reading. The naive
+ * pipeline is quadratic in the number of unique lines, so sizes stay
+ * small enough for it to finish. The byte engines read the same lines
+ * from an in-memory UTF-8 file. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UniqueBenchmark {
+
+  @Param({"1000", "10000"})
+  int size;
+
+  @Param({"sorted", "reverse", "random", "zipf", "prefix"})
+  String input;
+
+  String[] lines;
+
+  byte[] file;
+
+  @Setup
+  public void setUp() {
+    lines = Inputs.generate(input, size);
+    file = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public int naiveUnique() {
+    return Unique.naiveUnique(Arrays.asList(lines).iterator());
+  }
+
+  @Benchmark
+  public int avlUnique() {
+    return Unique.avlUnique(Arrays.asList(lines).iterator());
+  }
+
+  @Benchmark
+  public int treeSetUnique() {
+    TreeSet<String> seen = new TreeSet<String>();
+    for (String line : lines) {
+      seen.add(line);
+    }
+    return seen.size();
+  }
+
+  @Benchmark
+  public int hashSetUnique() {
+    HashSet<String> seen = new HashSet<String>();
+    for (String line : lines) {
+      seen.add(line);
+    }
+    return seen.size();
+  }
+
+  @Benchmark
+  public int byteAvlUnique() throws IOException {
+    return Unique.byteAvlUnique(new ByteLineReader(new ByteArrayInputStream(file)));
+  }
+
+  @Benchmark
+  public int hashUnique() throws IOException {
+    return Unique.hashUnique(new ByteLineReader(new ByteArrayInputStream(file)));
+  }
+
+  @Benchmark
+  public int sortUnique() throws IOException {
+    return Unique.sortUnique(new ByteLineReader(new ByteArrayInputStream(file)));
+  }
+}
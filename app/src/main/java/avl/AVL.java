@@ -1,104 +1,175 @@
 package avl;
 
-public class AVL {
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AVL implements Iterable<String> {
 
   public Node root;
 
   private int size;
 
+  // whether nodes count how many times their word was inserted
+  private final boolean counting;
+
+  /** constructor: empty tree */
+  public AVL() {
+    this(false);
+  }
+
+  /** constructor: empty tree. If counting is set, each node counts how
+   *  many times its word has been inserted (see occurrences). */
+  public AVL(boolean counting) {
+    this.counting = counting;
+  }
+
   public int getSize() {
     return size;
   }
 
+  /** height of the tree: 0 for a single node, -1 if empty */
+  public int getHeight() {
+    return height(root);
+  }
+
+  /** build a height-balanced tree holding keys in O(n) time, without
+   *  comparisons beyond checking the order.
+   *  precondition: keys is sorted in increasing order with no duplicates;
+   *  otherwise IllegalArgumentException is thrown. */
+  public static AVL fromSorted(String[] keys) {
+    return fromSorted(Arrays.asList(keys).iterator(), keys.length);
+  }
+
+  /** build a height-balanced tree from the sorted, duplicate-free keys
+   *  remaining in keys. The keys are buffered first since their number is
+   *  not known. */
+  public static AVL fromSorted(Iterator<String> keys) {
+    ArrayList<String> all = new ArrayList<String>();
+    while (keys.hasNext()) {
+      all.add(keys.next());
+    }
+    return fromSorted(all.iterator(), all.size());
+  }
+
+  /** build a height-balanced tree from exactly count sorted, duplicate-free
+   *  keys taken from keys, streaming them without buffering */
+  public static AVL fromSorted(Iterator<String> keys, int count) {
+    return fromSorted(keys, count, true);
+  }
+
+  /* fromSorted for keys known to be sorted and distinct, such as those
+   * read back from a snapshot, skipping the comparison of each key */
+  static AVL fromSortedUnchecked(Iterator<String> keys, int count) {
+    return fromSorted(keys, count, false);
+  }
+
+  private static AVL fromSorted(Iterator<String> keys, int count,
+      boolean checkOrder) {
+    if (count < 0) {
+      throw new IllegalArgumentException("negative key count " + count);
+    }
+    AVL t = new AVL();
+    SortedBuilder b = t.new SortedBuilder(keys, checkOrder);
+    t.root = b.build(count, null);
+    if (keys.hasNext()) {
+      throw new IllegalArgumentException("more than " + count + " keys given");
+    }
+    t.size = count;
+    return t;
+  }
+
+  /** write the tree to file as a binary snapshot (see AVLSnapshot), with
+   *  keys front-coded if frontCoded is set, replacing any existing file */
+  public void save(Path file, boolean frontCoded) throws IOException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      AVLSnapshot.save(this, ch, frontCoded);
+    }
+  }
+
+  /** read a tree back from a snapshot written by save, in linear time */
+  public static AVL load(Path file) throws IOException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      return AVLSnapshot.load(ch);
+    }
+  }
+
   /** find w in the tree. return the node containing w or
   * null if not found */
   public Node search(String w) {
-    return search(root, w);
-  }
-  private Node search(Node n, String w) {
-    if (n == null) {
-      return null;
+    Node n = root;
+    int depth = 0;
+    while (n != null) {
+      depth++;
+      int c = w.compareTo(n.word);
+      if (c == 0) {
+        break;
+      }
+      n = c < 0 ? n.left : n.right;
     }
-    if (w.equals(n.word)) {
-      return n;
-    } else if (w.compareTo(n.word) < 0) {
-      return search(n.left, w);
-    } else {
-      return search(n.right, w);
+    if (AVLStats.ENABLED) {
+      AVLStats.descended(depth);
     }
+    return n;
   }
 
   /** insert w into the tree as a standard BST, ignoring balance */
   public void bstInsert(String w) {
     if (root == null) {
-      root = new Node(w);
+      root = newNode(w, null);
       size = 1;
       return;
     }
-    bstInsert(root, w);
-  }
-
-  /* insert w into the tree rooted at n, ignoring balance
-   * pre: n is not null */
-  private void bstInsert(Node n, String w) {
-    if (w.compareTo(n.word) < 0) {
-      if (n.left == null) {
-        n.left = new Node(w, n);
-        size++;
-      } else if (w.compareTo(n.left.word) < 0) {
-        if (n.left.left == null) {
-          n.left.left = new Node(w, n.left);
-          size++;
-        } else {
-          bstInsert(n.left.left, w);
+    Node n = root;
+    int depth = 0;
+    while (true) {
+      depth++;
+      int c = w.compareTo(n.word);
+      if (c == 0) {
+        // w is already in the tree
+        if (counting) {
+          ((CountedNode) n).count++;
         }
-      } else if (w.compareTo(n.left.word) > 0) {
-        if (n.left.right == null) {
-          n.left.right = new Node(w, n.left);
-          size++;
-        } else {
-          bstInsert(n.left.right, w);
+        if (AVLStats.ENABLED) {
+          AVLStats.descended(depth);
         }
-      }  /* Else w.compareTo(root.left.word) == 0
-       * Do nothing, word = word already in root.left node*/
-    } else if (w.compareTo(n.word) > 0) {
-      if (n.right == null) {
-        n.right = new Node(w, n);
-        size++;
-      } else if (w.compareTo(n.right.word) < 0) {
-        if (n.right.left == null) {
-          n.right.left = new Node(w, n.right);
-          size++;
-        } else {
-          bstInsert(n.right.left, w);
+        return;
+      }
+      Node next = c < 0 ? n.left : n.right;
+      if (next == null) {
+        if (AVLStats.ENABLED) {
+          AVLStats.descended(depth);
         }
-      } else if (w.compareTo(n.right.word) > 0) {
-        if (n.right.right == null) {
-          n.right.right = new Node(w, n.right);
-          size++;
+        if (c < 0) {
+          n.left = newNode(w, n);
         } else {
-          bstInsert(n.right.right, w);
+          n.right = newNode(w, n);
         }
-      }  /* Else w.compareTo(root.right.word) == 0
-       * Do nothing, word = word already in root.right node */
+        size++;
+        growPath(n);
+        return;
+      }
+      n = next;
     }
-    /* Else w.compareTo(root.word) == 0
-     * Do nothing, word = word already in root node */
   }
 
   /** Recalculate height of n ancestors up to and including root
    *  precondition: n is not null and already part of a valid AVL tree
    **/
   private void reCalculateHeight(Node n) {
-    int rightHeight = n.right != null ? n.right.height : 0;
-    int leftHeight = n.left != null ? n.left.height : 0;
-
-    if (n.right == null && n.left == null) {
-      n.height = 0;
-    } else n.height = 1 + Math.max(leftHeight, rightHeight);
-
-    if (n.parent != null) {
-      reCalculateHeight(n.parent);
+    while (n != null) {
+      update(n);
+      n = n.parent;
     }
   }
 
@@ -106,87 +177,167 @@ public class AVL {
   *  precondition: the tree is AVL balanced and any prior insertions have been
   *  performed by this method. */
   public void avlInsert(String w) {
+    avlInsertIfAbsent(w);
+  }
+
+  /** insert w into the tree if it is not already present, maintaining AVL
+   *  balance. Descends from the root only once, with one comparison per level.
+   *  Returns true if w was newly inserted, false if it was already in the tree.
+   *  precondition: the tree is AVL balanced and any prior insertions have been
+   *  performed by this method. */
+  public boolean avlInsertIfAbsent(String w) {
     if (root == null) {
-      root = new Node(w);
+      root = newNode(w, null);
       size = 1;
-      return;
+      return true;
+    }
+    Node n = root;
+    int c = w.compareTo(n.word);
+    int depth = 1;
+    while (c != 0) {
+      Node next = c < 0 ? n.left : n.right;
+      if (next == null) {
+        break;
+      }
+      n = next;
+      c = w.compareTo(n.word);
+      depth++;
+    }
+    if (AVLStats.ENABLED) {
+      AVLStats.descended(depth);
+    }
+    if (c == 0) {
+      if (counting) {
+        ((CountedNode) n).count++;
+      }
+      return false;
     }
-    avlInsert(root, w);
+    if (c < 0) {
+      n.left = newNode(w, n);
+    } else {
+      n.right = newNode(w, n);
+    }
+    size++;
+    growPath(n);
+    retraceInsert(n);
+    return true;
   }
 
-  /* insert w into the tree, maintaining AVL balance
-   *  precondition: the tree is AVL balanced and n is not null */
-  private void avlInsert(Node n, String w) {
-    if (w.compareTo(n.word) < 0) {
-      if (n.left == null) {
-        n.left = new Node(w, n);
-        n.left.height = 0;
-        reCalculateHeight(n);
-        if (n.parent != null && n.parent.parent != null){
-          rebalance(n);
-        }
-        size++;
-      } else if (w.compareTo(n.left.word) < 0) {
-        if (n.left.left == null) {
-          n.left.left = new Node(w, n.left);
-          n.left.left.height = 0;
-          reCalculateHeight(n.left);
-          rebalance(n.left);
-          size++;
-        } else {
-          avlInsert(n.left.left, w);
-        }
-      } else if (w.compareTo(n.left.word) > 0) {
-        if (n.left.right == null) {
-          n.left.right = new Node(w, n.left);
-          n.left.right.height = 0;
-          reCalculateHeight(n.left);
-          rebalance(n.left);
-          size++;
-        } else {
-          avlInsert(n.left.right, w);
-        }
-      }  /* Else w.compareTo(root.left.word) == 0
-       * Do nothing, word = word already in root.left node*/
-    } else if (w.compareTo(n.word) > 0) {
-      if (n.right == null) {
-        n.right = new Node(w, n);
-        n.right.height = 0;
-        reCalculateHeight(n);
-        if (n.parent != null && n.parent.parent != null){
-          rebalance(n);
-        }
-        size++;
-      } else if (w.compareTo(n.right.word) < 0) {
-        if (n.right.left == null) {
-          n.right.left = new Node(w, n.right);
-          n.right.left.height = 0;
-          reCalculateHeight(n.right);
-          rebalance(n.right);
-          size++;
-        } else {
-          avlInsert(n.right.left, w);
-        }
-      } else if (w.compareTo(n.right.word) > 0) {
-        if (n.right.right == null) {
-          n.right.right = new Node(w, n.right);
-          n.right.right.height = 0;
-          reCalculateHeight(n.right);
-          rebalance(n.right);
-          size++;
-        } else {
-          avlInsert(n.right.right, w);
-        }
-      }  /* Else w.compareTo(root.right.word) == 0
-       * Do nothing, word = word already in root.right node */
+  /** update heights from n up towards the root after a leaf was attached
+   *  below n, stopping at the first ancestor whose height is unchanged.
+   *  At most one single or double rotation is done, after which the rotated
+   *  subtree has its pre-insertion height and nothing above it changes.
+   *  precondition: the tree was AVL balanced before the leaf was attached */
+  private void retraceInsert(Node n) {
+    while (n != null) {
+      int oldHeight = n.height;
+      update(n);
+      int nbalance = getBalance(n);
+      if (nbalance < -1 || nbalance > 1) {
+        rotateToBalance(n);
+        return;
+      }
+      if (n.height == oldHeight) {
+        return;
+      }
+      n = n.parent;
+    }
+  }
+
+  /* a new leaf holding w, counting occurrences if the tree does */
+  private Node newNode(String w, Node parent) {
+    return counting ? new CountedNode(w, parent) : new Node(w, parent);
+  }
+
+  /** return how many times w has been inserted, or 0 if it is not in the
+   *  tree. Without counting, every word present has occurred once. */
+  public int occurrences(String w) {
+    Node n = search(w);
+    if (n == null) {
+      return 0;
+    }
+    return n instanceof CountedNode ? ((CountedNode) n).count : 1;
+  }
+
+  /** return the k most often inserted words, most frequent first, with
+   *  ties in word order. Makes one traversal keeping a heap of at most k
+   *  nodes, so it takes O(n log k) time and O(k) extra space.
+   *  precondition: the tree was constructed with counting set */
+  public List<CountedNode> mostFrequent(int k) {
+    if (!counting) {
+      throw new IllegalStateException("tree does not count occurrences");
+    }
+    if (k < 0) {
+      throw new IllegalArgumentException("k must not be negative, not " + k);
+    }
+    // least frequent at the head, and among equals the largest word
+    Comparator<CountedNode> order = (a, b) -> a.count != b.count
+        ? Integer.compare(a.count, b.count) : b.word.compareTo(a.word);
+    PriorityQueue<CountedNode> heap =
+        new PriorityQueue<CountedNode>(Math.min(k, size) + 1, order);
+    Node n = root == null || k == 0 ? null : first(root);
+    for (; n != null; n = successor(n)) {
+      CountedNode cn = (CountedNode) n;
+      if (heap.size() < k) {
+        heap.add(cn);
+      } else if (order.compare(cn, heap.peek()) > 0) {
+        heap.poll();
+        heap.add(cn);
+      }
+    }
+    ArrayList<CountedNode> top = new ArrayList<CountedNode>(heap);
+    top.sort(order.reversed());
+    return top;
+  }
+
+  /** height of n, treating an empty subtree as -1 */
+  private static int height(Node n) {
+    return n != null ? n.height : -1;
+  }
+
+  /** number of words in the subtree rooted at n */
+  private static int size(Node n) {
+    return n != null ? n.subtreeSize : 0;
+  }
+
+  /** set n's height and subtree size from its children's without touching
+   *  ancestors */
+  private static void update(Node n) {
+    if (AVLStats.ENABLED) {
+      AVLStats.heightUpdated();
+    }
+    n.height = 1 + Math.max(height(n.left), height(n.right));
+    n.subtreeSize = 1 + size(n.left) + size(n.right);
+  }
+
+  /* add one to the subtree size of n and each of its ancestors */
+  private static void growPath(Node n) {
+    for (; n != null; n = n.parent) {
+      n.subtreeSize++;
     }
-    /* Else w.compareTo(root.word) == 0
-     * Do nothing, word = word already in root node */
   }
 
   /** do a left rotation: rotate on the edge from x to its right child.
   *  precondition: x has a non-null right child */
   public void leftRotate(Node x) {
+    leftRotate(x, false);
+  }
+
+  /* leftRotate, counted as the second half of a double rotation if
+   * isDouble is set */
+  private void leftRotate(Node x, boolean isDouble) {
+    rotateLeft(x);
+    if (AVLStats.ENABLED) {
+      AVLStats.rotated(isDouble);
+    }
+    if (x.parent.parent != null) {
+      reCalculateHeight(x.parent.parent);
+    }
+  }
+
+  /* left rotation that only recalculates the heights of x and its new parent
+   * precondition: x has a non-null right child */
+  private void rotateLeft(Node x) {
     Node nodeY = x.right;
 
     // If y's left node not null, update x.right to = y.left
@@ -211,12 +362,31 @@ public class AVL {
     x.parent = nodeY; //y
     //Update y's left node to be x
     x.parent.left = x;
-    reCalculateHeight(x);
+    update(x);
+    update(nodeY);
   }
 
   /** do a right rotation: rotate on the edge from x to its left child.
   *  precondition: y has a non-null left child */
   public void rightRotate(Node y) {
+    rightRotate(y, false);
+  }
+
+  /* rightRotate, counted as the second half of a double rotation if
+   * isDouble is set */
+  private void rightRotate(Node y, boolean isDouble) {
+    rotateRight(y);
+    if (AVLStats.ENABLED) {
+      AVLStats.rotated(isDouble);
+    }
+    if (y.parent.parent != null) {
+      reCalculateHeight(y.parent.parent);
+    }
+  }
+
+  /* right rotation that only recalculates the heights of y and its new parent
+   * precondition: y has a non-null left child */
+  private void rotateRight(Node y) {
     Node x = y.left;
 
     // If x's right node not null, update y.left to = x.right
@@ -241,7 +411,8 @@ public class AVL {
     //Update x's right node to be y
     y.parent = x;
     y.parent.right = y;
-    reCalculateHeight(y);
+    update(y);
+    update(x);
   }
 
   /** get Node n's balance to use in the rebalance method
@@ -252,60 +423,503 @@ public class AVL {
     return rightHeight - leftHeight;
   }
 
+  /* do the single or double rotation that fixes an AVL violation at n,
+   * updating only the heights of the rotated nodes. Returns the node that
+   * took n's place.
+   * precondition: n's balance is -2 or 2 and its descendants are balanced */
+  private Node rotateToBalance(Node n) {
+    boolean isDouble;
+    if (getBalance(n) < 0) {
+      isDouble = getBalance(n.left) > 0;
+      if (isDouble) {
+        rotateLeft(n.left);
+      }
+      rotateRight(n);
+    } else {
+      isDouble = getBalance(n.right) < 0;
+      if (isDouble) {
+        rotateRight(n.right);
+      }
+      rotateLeft(n);
+    }
+    if (AVLStats.ENABLED) {
+      AVLStats.rotated(isDouble);
+    }
+    return n.parent;
+  }
+
   /** rebalance a node N after a potentially AVL-violoting insertion.
   *  precondition: none of n's descendants violates the AVL property */
   public void rebalance(Node n) {
-    int nbalance = getBalance(n);
-    int nleftBalance = n.left != null ? getBalance(n.left) : 0;
-    int nrightBalance = n.right != null ? getBalance(n.right) : 0;
-
-    //Case 1 & 2
-    if (nbalance < -1) {
-      if (nleftBalance < 0) {
-        rightRotate(n);
+    while (n != null) {
+      int nbalance = getBalance(n);
+      int nleftBalance = n.left != null ? getBalance(n.left) : 0;
+      int nrightBalance = n.right != null ? getBalance(n.right) : 0;
+
+      //Case 1 & 2
+      if (nbalance < -1) {
+        if (nleftBalance < 0) {
+          rightRotate(n);
+        } else {
+          // a double rotation, counted once
+          rotateLeft(n.left);
+          rightRotate(n, true);
+        }
+        //Case 3 & 4
+      } else if (nbalance > 1){
+        if (nrightBalance < 0) {
+          rotateRight(n.right);
+          leftRotate(n, true);
+        } else {
+          leftRotate(n);
+        }
+      }
+      n = n.parent;
+    }
+  }
+
+  /** remove the word w from the tree, maintaining AVL balance. Returns true
+   *  if w was in the tree.
+   *  precondition: the tree is AVL balanced */
+  public boolean remove(String w) {
+    Node z = search(w);
+    if (z == null) {
+      return false;
+    }
+    // lowest node whose subtree lost height
+    Node p;
+    if (z.left != null && z.right != null) {
+      // splice out z's successor s and put it in z's place
+      Node s = z.right;
+      while (s.left != null) {
+        s = s.left;
+      }
+      if (s.parent == z) {
+        p = s;
+      } else {
+        p = s.parent;
+        p.left = s.right;
+        if (s.right != null) {
+          s.right.parent = p;
+        }
+        s.right = z.right;
+        s.right.parent = s;
+      }
+      s.left = z.left;
+      s.left.parent = s;
+      s.height = z.height;
+      replaceChild(z, s);
+    } else {
+      p = z.parent;
+      replaceChild(z, z.left != null ? z.left : z.right);
+    }
+    z.parent = null;
+    z.left = null;
+    z.right = null;
+    size--;
+    for (Node q = p; q != null; q = q.parent) {
+      q.subtreeSize = 1 + size(q.left) + size(q.right);
+    }
+    retraceRemove(p);
+    return true;
+  }
+
+  /* put n in old's place under old's parent, or at the root */
+  private void replaceChild(Node old, Node n) {
+    Node p = old.parent;
+    if (p == null) {
+      root = n;
+    } else if (p.left == old) {
+      p.left = n;
+    } else {
+      p.right = n;
+    }
+    if (n != null) {
+      n.parent = p;
+    }
+  }
+
+  /* update heights and rebalance from n up towards the root after a node
+   * was removed below n, stopping at the first subtree whose height is
+   * unchanged. A removal can need a rotation at every level. */
+  private void retraceRemove(Node n) {
+    while (n != null) {
+      int oldHeight = n.height;
+      update(n);
+      int nbalance = getBalance(n);
+      if (nbalance < -1 || nbalance > 1) {
+        n = rotateToBalance(n);
+      }
+      if (n.height == oldHeight) {
+        return;
+      }
+      n = n.parent;
+    }
+  }
+
+  /** return the number of words in the tree less than w, in O(log n) */
+  public int rank(String w) {
+    int r = 0;
+    Node n = root;
+    while (n != null) {
+      int c = w.compareTo(n.word);
+      if (c <= 0) {
+        n = n.left;
+      } else {
+        r += size(n.left) + 1;
+        n = n.right;
+      }
+    }
+    return r;
+  }
+
+  /** return the word with rank k, that is the (k+1)th smallest, in
+   *  O(log n). Throws IndexOutOfBoundsException unless 0 <= k < getSize() */
+  public String select(int k) {
+    if (k < 0 || k >= size) {
+      throw new IndexOutOfBoundsException("rank " + k + " in a tree of " + size);
+    }
+    Node n = root;
+    while (true) {
+      int leftSize = size(n.left);
+      if (k < leftSize) {
+        n = n.left;
+      } else if (k == leftSize) {
+        return n.word;
+      } else {
+        k -= leftSize + 1;
+        n = n.right;
+      }
+    }
+  }
+
+  /** return the number of words w with lo <= w < hi, in O(log n) */
+  public int countRange(String lo, String hi) {
+    if (lo.compareTo(hi) >= 0) {
+      return 0;
+    }
+    return rank(hi) - rank(lo);
+  }
+
+  /** return the smallest word in the tree, or null if it is empty */
+  public String first() {
+    return root == null ? null : first(root).word;
+  }
+
+  /** return the largest word in the tree, or null if it is empty */
+  public String last() {
+    return root == null ? null : last(root).word;
+  }
+
+  /** return the largest word <= w, or null if there is none */
+  public String floor(String w) {
+    Node n = floorNode(w, true);
+    return n == null ? null : n.word;
+  }
+
+  /** return the largest word < w, or null if there is none */
+  public String lower(String w) {
+    Node n = floorNode(w, false);
+    return n == null ? null : n.word;
+  }
+
+  /** return the smallest word >= w, or null if there is none */
+  public String ceiling(String w) {
+    Node n = ceilingNode(w, true);
+    return n == null ? null : n.word;
+  }
+
+  /** return the smallest word > w, or null if there is none */
+  public String higher(String w) {
+    Node n = ceilingNode(w, false);
+    return n == null ? null : n.word;
+  }
+
+  /** iterate over every word in increasing order */
+  public Iterator<String> iterator() {
+    return new InOrderIterator(root == null ? null : first(root), null);
+  }
+
+  /** iterate in increasing order over the words w with lo <= w < hi. A null
+   *  lo or hi leaves that end unbounded. The iterator walks parent pointers,
+   *  so it uses O(1) extra memory and allocates nothing per word. The tree
+   *  must not be modified during the iteration. */
+  public Iterator<String> iterator(String lo, String hi) {
+    Node start = lo == null ? (root == null ? null : first(root)) : ceilingNode(lo, true);
+    return new InOrderIterator(start, hi);
+  }
+
+  /* the node with the largest word below w, or equal to w if inclusive */
+  private Node floorNode(String w, boolean inclusive) {
+    Node best = null;
+    Node n = root;
+    while (n != null) {
+      int c = w.compareTo(n.word);
+      if (c == 0 && inclusive) {
+        return n;
+      } else if (c > 0) {
+        best = n;
+        n = n.right;
       } else {
-        leftRotate(n.left);
-        rightRotate(n);
+        n = n.left;
       }
-      //Case 3 & 4
-    } else if (nbalance > 1){
-      if (nrightBalance < 0) {
-        rightRotate(n.right);
-        leftRotate(n);
+    }
+    return best;
+  }
+
+  /* the node with the smallest word above w, or equal to w if inclusive */
+  private Node ceilingNode(String w, boolean inclusive) {
+    Node best = null;
+    Node n = root;
+    while (n != null) {
+      int c = w.compareTo(n.word);
+      if (c == 0 && inclusive) {
+        return n;
+      } else if (c < 0) {
+        best = n;
+        n = n.left;
       } else {
-        leftRotate(n);
+        n = n.right;
+      }
+    }
+    return best;
+  }
+
+  /** in-order iterator from a starting node up to an exclusive bound */
+  private class InOrderIterator implements Iterator<String> {
+    private Node next;
+    private final String hi;
+
+    InOrderIterator(Node start, String hi) {
+      this.hi = hi;
+      this.next = inRange(start);
+    }
+
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    public String next() {
+      if (next == null) {
+        throw new NoSuchElementException();
       }
+      String w = next.word;
+      next = inRange(successor(next));
+      return w;
+    }
+
+    private Node inRange(Node n) {
+      return n != null && (hi == null || n.word.compareTo(hi) < 0) ? n : null;
+    }
+  }
+
+  /** split this tree around w. Returns three trees: the words less than
+   *  w, the words greater than w, and w alone if it was in this tree or
+   *  else an empty tree, so the size of the third tells whether w was
+   *  found. This tree is left empty.
+   *  Takes O(log n). */
+  public AVL[] split(String w) {
+    AVLJoin.Split s = AVLJoin.split(root, w);
+    AVL less = wrap(s.less);
+    AVL greater = wrap(s.greater);
+    AVL found = wrap(s.found);
+    less.size = size(less.root);
+    greater.size = size(greater.root);
+    found.size = size(found.root);
+    root = null;
+    size = 0;
+    return new AVL[] {less, greater, found};
+  }
+
+  /** join less, w and greater into one balanced tree in O(log n). less
+   *  and greater are left empty.
+   *  precondition: every word in less < w < every word in greater;
+   *  otherwise IllegalArgumentException is thrown. */
+  public static AVL join(AVL less, String w, AVL greater) {
+    if (less.root != null && last(less.root).word.compareTo(w) >= 0
+        || greater.root != null && first(greater.root).word.compareTo(w) <= 0) {
+      throw new IllegalArgumentException("trees are not ordered around \"" + w + "\"");
+    }
+    AVL t = wrap(AVLJoin.join(less.root, less.new Node(w), greater.root));
+    t.size = less.size + 1 + greater.size;
+    less.clear();
+    greater.clear();
+    return t;
+  }
+
+  /** return a tree of the words in a or b, in O(m log(n/m + 1)) for sizes
+   *  m <= n. Large trees are combined in parallel. a and b are left empty. */
+  public static AVL union(AVL a, AVL b) {
+    LongAdder duplicates = new LongAdder();
+    AVL t = wrap(AVLJoin.union(a.root, b.root, duplicates));
+    t.size = a.size + b.size - duplicates.intValue();
+    a.clear();
+    b.clear();
+    return t;
+  }
+
+  /** add every word of other to this tree, in O(m log(n/m + 1)) for sizes
+   *  m <= n. other is left empty. */
+  public void addAll(AVL other) {
+    LongAdder duplicates = new LongAdder();
+    root = AVLJoin.union(root, other.root, duplicates);
+    if (root != null) {
+      root.parent = null;
+    }
+    size += other.size - duplicates.intValue();
+    other.clear();
+  }
+
+  /** return a tree of the words in both a and b, in O(m log(n/m + 1)).
+   *  a and b are left empty. */
+  public static AVL intersection(AVL a, AVL b) {
+    LongAdder kept = new LongAdder();
+    AVL t = wrap(AVLJoin.intersection(a.root, b.root, kept));
+    t.size = kept.intValue();
+    a.clear();
+    b.clear();
+    return t;
+  }
+
+  /** return a tree of the words in a that are not in b, in
+   *  O(m log(n/m + 1)). a and b are left empty. */
+  public static AVL difference(AVL a, AVL b) {
+    LongAdder removed = new LongAdder();
+    AVL t = wrap(AVLJoin.difference(a.root, b.root, removed));
+    t.size = a.size - removed.intValue();
+    a.clear();
+    b.clear();
+    return t;
+  }
+
+  /* a tree whose root is n, with size still to be set */
+  private static AVL wrap(Node n) {
+    AVL t = new AVL();
+    if (n != null) {
+      n.parent = null;
+    }
+    t.root = n;
+    return t;
+  }
+
+  private void clear() {
+    root = null;
+    size = 0;
+  }
+
+  /* leftmost node of the subtree rooted at n */
+  private static Node first(Node n) {
+    if (n == null) {
+      return null;
     }
-    if (n.parent != null){
-      rebalance(n.parent);
+    while (n.left != null) {
+      n = n.left;
     }
+    return n;
   }
 
-  /** remove the word w from the tree */
-  public void remove(String w) {
-    remove(root, w);
+  /* rightmost node of the subtree rooted at n */
+  private static Node last(Node n) {
+    while (n.right != null) {
+      n = n.right;
+    }
+    return n;
   }
 
-  /* remove w from the tree rooted at n */
-  private void remove(Node n, String w) {
-    return; // (enhancement TODO - do the base assignment first)
+  /* in-order successor of n, or null if n is the last node */
+  private static Node successor(Node n) {
+    if (n.right != null) {
+      return first(n.right);
+    }
+    Node p = n.parent;
+    while (p != null && n == p.right) {
+      n = p;
+      p = p.parent;
+    }
+    return p;
   }
 
   /** print a sideways representation of the tree - root at left,
   * right is up, left is down. */
   public void printTree() {
-    printSubtree(root, 0);
-  }
-  private void printSubtree(Node n, int level) {
+    // reverse in-order walk along parent pointers, tracking the depth
+    Node n = root;
+    int level = 0;
     if (n == null) {
       return;
     }
-    printSubtree(n.right, level + 1);
+    while (n.right != null) {
+      n = n.right;
+      level++;
+    }
+    while (n != null) {
+      printNode(n, level);
+      if (n.left != null) {
+        n = n.left;
+        level++;
+        while (n.right != null) {
+          n = n.right;
+          level++;
+        }
+      } else {
+        Node child = n;
+        n = n.parent;
+        level--;
+        while (n != null && child == n.left) {
+          child = n;
+          n = n.parent;
+          level--;
+        }
+      }
+    }
+  }
+  private void printNode(Node n, int level) {
     for (int i = 0; i < level; i++) {
       System.out.print("        ");
     }
     System.out.println(n);
-    printSubtree(n.left, level + 1);
+  }
+
+  /** builds a balanced subtree from keys arriving in sorted order */
+  private class SortedBuilder {
+    private final Iterator<String> keys;
+    private final boolean checkOrder;
+    private String last;
+    private int taken;
+
+    SortedBuilder(Iterator<String> keys, boolean checkOrder) {
+      this.keys = keys;
+      this.checkOrder = checkOrder;
+    }
+
+    /* build a subtree from the next n keys, attached below parent. The
+     * recursion is only as deep as the resulting tree. */
+    Node build(int n, Node parent) {
+      if (n == 0) {
+        return null;
+      }
+      int leftCount = (n - 1) / 2;
+      Node node = new Node(null, parent);
+      node.left = build(leftCount, node);
+      node.word = next();
+      node.right = build(n - 1 - leftCount, node);
+      update(node);
+      return node;
+    }
+
+    private String next() {
+      if (!keys.hasNext()) {
+        throw new IllegalArgumentException("only " + taken + " keys given");
+      }
+      String w = keys.next();
+      if (checkOrder && last != null && w.compareTo(last) <= 0) {
+        throw new IllegalArgumentException("keys are not sorted and distinct at index "
+            + taken + ": \"" + last + "\" then \"" + w + "\"");
+      }
+      last = w;
+      taken++;
+      return w;
+    }
   }
 
   /** inner class representing a node in the tree. */
@@ -315,6 +929,8 @@ public class AVL {
     public Node left;
     public Node right;
     public int height;
+    /** number of words in the subtree rooted here, this one included */
+    public int subtreeSize = 1;
 
     public String toString() {
       return word + "(" + height + ")";
@@ -342,4 +958,15 @@ public class AVL {
       right = r;
     }
   }
+
+  /** a node that also counts how many times its word was inserted, used
+   *  by trees constructed with counting set */
+  public class CountedNode extends Node {
+    public int count = 1;
+
+    /** constructor: sets word and parent fields */
+    public CountedNode(String w, Node p) {
+      super(w, p);
+    }
+  }
 }
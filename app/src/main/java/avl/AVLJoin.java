@@ -0,0 +1,278 @@
+package avl;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/** join-based algorithms on AVL subtrees, after Blelloch, Ferizovic and Sun,
+ * "Just Join for Parallel Ordered Sets" (SPAA 2016). Everything here works
+ * on bare subtrees and reuses their nodes, so the input subtrees are
+ * destroyed. Heights follow AVL: a leaf is 0 and an empty subtree is -1.
+ * Subtree sizes are kept up to date along with heights.
+ * The parent of a returned subtree root is not set; the caller does that. */
+final class AVLJoin {
+
+  // subtrees at least this high on both sides are worth forking for
+  private static final int PARALLEL_HEIGHT = 12;
+
+  private AVLJoin() { }
+
+  /** the pieces of a subtree split around a key */
+  static final class Split {
+    final AVL.Node less;
+    final AVL.Node found;
+    final AVL.Node greater;
+
+    Split(AVL.Node less, AVL.Node found, AVL.Node greater) {
+      this.less = less;
+      this.found = found;
+      this.greater = greater;
+    }
+  }
+
+  /* join l, the single node k, and r into one balanced subtree.
+   * precondition: every key in l < k.word < every key in r */
+  static AVL.Node join(AVL.Node l, AVL.Node k, AVL.Node r) {
+    if (height(l) > height(r) + 1) {
+      return joinRight(l, k, r);
+    } else if (height(r) > height(l) + 1) {
+      return joinLeft(l, k, r);
+    }
+    return link(l, k, r);
+  }
+
+  /* join two subtrees with every key in l < every key in r */
+  static AVL.Node join2(AVL.Node l, AVL.Node r) {
+    if (l == null) {
+      return r;
+    }
+    AVL.Node[] lastOut = new AVL.Node[1];
+    AVL.Node rest = splitLast(l, lastOut);
+    return join(rest, lastOut[0], r);
+  }
+
+  /* split t into the keys below w, the node holding w (or null) and the
+   * keys above w */
+  static Split split(AVL.Node t, String w) {
+    if (t == null) {
+      return new Split(null, null, null);
+    }
+    AVL.Node l = t.left;
+    AVL.Node r = t.right;
+    int c = w.compareTo(t.word);
+    if (c == 0) {
+      detach(t);
+      return new Split(l, t, r);
+    } else if (c < 0) {
+      Split s = split(l, w);
+      return new Split(s.less, s.found, join(s.greater, detach(t), r));
+    } else {
+      Split s = split(r, w);
+      return new Split(join(l, detach(t), s.less), s.found, s.greater);
+    }
+  }
+
+  /* union of t1 and t2. Each key found in both adds one to duplicates. */
+  static AVL.Node union(AVL.Node t1, AVL.Node t2, LongAdder duplicates) {
+    if (t1 == null) {
+      return t2;
+    } else if (t2 == null) {
+      return t1;
+    }
+    AVL.Node l1 = t1.left;
+    AVL.Node r1 = t1.right;
+    Split s = split(t2, t1.word);
+    if (s.found != null) {
+      duplicates.increment();
+    }
+    AVL.Node[] halves = both(
+        () -> union(l1, s.less, duplicates),
+        () -> union(r1, s.greater, duplicates),
+        height(t1) >= PARALLEL_HEIGHT && height(t2) >= PARALLEL_HEIGHT);
+    return join(halves[0], detach(t1), halves[1]);
+  }
+
+  /* intersection of t1 and t2. Each key kept adds one to kept. */
+  static AVL.Node intersection(AVL.Node t1, AVL.Node t2, LongAdder kept) {
+    if (t1 == null || t2 == null) {
+      return null;
+    }
+    AVL.Node l1 = t1.left;
+    AVL.Node r1 = t1.right;
+    Split s = split(t2, t1.word);
+    AVL.Node[] halves = both(
+        () -> intersection(l1, s.less, kept),
+        () -> intersection(r1, s.greater, kept),
+        height(t1) >= PARALLEL_HEIGHT && height(t2) >= PARALLEL_HEIGHT);
+    if (s.found != null) {
+      kept.increment();
+      return join(halves[0], detach(t1), halves[1]);
+    }
+    return join2(halves[0], halves[1]);
+  }
+
+  /* keys of t1 that are not in t2. Each key removed adds one to removed. */
+  static AVL.Node difference(AVL.Node t1, AVL.Node t2, LongAdder removed) {
+    if (t1 == null || t2 == null) {
+      return t1;
+    }
+    AVL.Node l2 = t2.left;
+    AVL.Node r2 = t2.right;
+    Split s = split(t1, t2.word);
+    if (s.found != null) {
+      removed.increment();
+    }
+    AVL.Node[] halves = both(
+        () -> difference(s.less, l2, removed),
+        () -> difference(s.greater, r2, removed),
+        height(t1) >= PARALLEL_HEIGHT && height(t2) >= PARALLEL_HEIGHT);
+    return join2(halves[0], halves[1]);
+  }
+
+  /* run both computations, in parallel if asked, and return their results */
+  private static AVL.Node[] both(Computation left, Computation right,
+      boolean parallel) {
+    if (!parallel) {
+      return new AVL.Node[] {left.compute(), right.compute()};
+    }
+    RecursiveTask<AVL.Node> l = task(left);
+    RecursiveTask<AVL.Node> r = task(right);
+    ForkJoinTask.invokeAll(l, r);
+    return new AVL.Node[] {l.join(), r.join()};
+  }
+
+  private interface Computation {
+    AVL.Node compute();
+  }
+
+  private static RecursiveTask<AVL.Node> task(Computation c) {
+    return new RecursiveTask<AVL.Node>() {
+      protected AVL.Node compute() {
+        return c.compute();
+      }
+    };
+  }
+
+  /* join where l is more than one higher than r: walk down l's right
+   * spine to a subtree of about r's height */
+  private static AVL.Node joinRight(AVL.Node l, AVL.Node k, AVL.Node r) {
+    AVL.Node c = l.right;
+    if (height(c) <= height(r) + 1) {
+      AVL.Node t = link(c, k, r);
+      if (height(t) <= height(l.left) + 1) {
+        setRight(l, t);
+        update(l);
+        return l;
+      }
+      setRight(l, rotateRight(t));
+      update(l);
+      return rotateLeft(l);
+    }
+    AVL.Node t = joinRight(c, k, r);
+    setRight(l, t);
+    update(l);
+    if (height(t) <= height(l.left) + 1) {
+      return l;
+    }
+    return rotateLeft(l);
+  }
+
+  /* mirror image of joinRight, for r more than one higher than l */
+  private static AVL.Node joinLeft(AVL.Node l, AVL.Node k, AVL.Node r) {
+    AVL.Node c = r.left;
+    if (height(c) <= height(l) + 1) {
+      AVL.Node t = link(l, k, c);
+      if (height(t) <= height(r.right) + 1) {
+        setLeft(r, t);
+        update(r);
+        return r;
+      }
+      setLeft(r, rotateLeft(t));
+      update(r);
+      return rotateRight(r);
+    }
+    AVL.Node t = joinLeft(l, k, c);
+    setLeft(r, t);
+    update(r);
+    if (height(t) <= height(r.right) + 1) {
+      return r;
+    }
+    return rotateRight(r);
+  }
+
+  /* remove the largest node of t. Returns what is left of t and puts the
+   * detached node in lastOut[0]. */
+  private static AVL.Node splitLast(AVL.Node t, AVL.Node[] lastOut) {
+    if (t.right == null) {
+      AVL.Node l = t.left;
+      lastOut[0] = detach(t);
+      return l;
+    }
+    AVL.Node l = t.left;
+    AVL.Node rest = splitLast(t.right, lastOut);
+    return join(l, detach(t), rest);
+  }
+
+  /* make k the parent of l and r */
+  private static AVL.Node link(AVL.Node l, AVL.Node k, AVL.Node r) {
+    setLeft(k, l);
+    setRight(k, r);
+    update(k);
+    return k;
+  }
+
+  private static AVL.Node rotateLeft(AVL.Node x) {
+    AVL.Node y = x.right;
+    setRight(x, y.left);
+    setLeft(y, x);
+    update(x);
+    update(y);
+    return y;
+  }
+
+  private static AVL.Node rotateRight(AVL.Node y) {
+    AVL.Node x = y.left;
+    setLeft(y, x.right);
+    setRight(x, y);
+    update(y);
+    update(x);
+    return x;
+  }
+
+  private static void setLeft(AVL.Node p, AVL.Node c) {
+    p.left = c;
+    if (c != null) {
+      c.parent = p;
+    }
+  }
+
+  private static void setRight(AVL.Node p, AVL.Node c) {
+    p.right = c;
+    if (c != null) {
+      c.parent = p;
+    }
+  }
+
+  /* cut n loose from its parent and children so it can be relinked */
+  private static AVL.Node detach(AVL.Node n) {
+    n.parent = null;
+    n.left = null;
+    n.right = null;
+    n.height = 0;
+    n.subtreeSize = 1;
+    return n;
+  }
+
+  static int height(AVL.Node n) {
+    return n != null ? n.height : -1;
+  }
+
+  private static int size(AVL.Node n) {
+    return n != null ? n.subtreeSize : 0;
+  }
+
+  private static void update(AVL.Node n) {
+    n.height = 1 + Math.max(height(n.left), height(n.right));
+    n.subtreeSize = 1 + size(n.left) + size(n.right);
+  }
+}
@@ -0,0 +1,303 @@
+package avl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/** compact binary snapshots of an AVL. A snapshot is
+ *
+ *    magic "AVLS", version (1 byte), flags (1 byte), key count (4 bytes)
+ *    the keys in increasing order
+ *    CRC32 of everything before it (4 bytes)
+ *
+ * with integers big-endian. Each key is its UTF-8 length as a varint
+ * followed by its bytes. With FRONT_CODED set, each key instead starts with
+ * the number of leading bytes it shares with the key before it, and only
+ * the rest of the key is stored.
+ *
+ * Both directions stream through a fixed buffer, so a snapshot is never
+ * held in memory whole. Loading builds the tree with fromSorted in linear
+ * time; the keys are trusted to be in order since the checksum matched. */
+public final class AVLSnapshot {
+
+  private static final int MAGIC = 0x41564c53;
+  private static final byte VERSION = 1;
+
+  // flag: keys share their prefix with the key before them
+  private static final byte FRONT_CODED = 1;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private AVLSnapshot() { }
+
+  /** write every word of tree to out, front-coded if frontCoded is set */
+  public static void save(AVL tree, WritableByteChannel out, boolean frontCoded)
+      throws IOException {
+    Output o = new Output(out);
+    o.putInt(MAGIC);
+    o.put(VERSION);
+    o.put(frontCoded ? FRONT_CODED : 0);
+    o.putInt(tree.getSize());
+    byte[] prev = new byte[0];
+    for (String w : tree) {
+      byte[] key = w.getBytes(StandardCharsets.UTF_8);
+      int shared = 0;
+      if (frontCoded) {
+        int max = Math.min(prev.length, key.length);
+        while (shared < max && prev[shared] == key[shared]) {
+          shared++;
+        }
+        o.putVarint(shared);
+      }
+      o.putVarint(key.length - shared);
+      o.put(key, shared, key.length - shared);
+      prev = key;
+    }
+    o.finish();
+  }
+
+  /** read a snapshot written by save and return it as a balanced tree.
+   *  Throws IOException if in does not hold a whole, intact snapshot. */
+  public static AVL load(ReadableByteChannel in) throws IOException {
+    Keys keys = keys(in);
+    try {
+      return AVL.fromSortedUnchecked(keys, keys.count);
+    } catch (UncheckedIOException exc) {
+      throw exc.getCause();
+    }
+  }
+
+  /* read the header of a snapshot and return its keys, to be decoded one
+   * at a time. The checksum is checked when the last key is read, and
+   * failures then are thrown as UncheckedIOException. */
+  static Keys keys(ReadableByteChannel in) throws IOException {
+    Input i = new Input(in);
+    if (i.getInt() != MAGIC) {
+      throw new IOException("not an AVL snapshot");
+    }
+    byte version = i.get();
+    if (version != VERSION) {
+      throw new IOException("unsupported AVL snapshot version " + version);
+    }
+    boolean frontCoded = (i.get() & FRONT_CODED) != 0;
+    int count = i.getInt();
+    if (count < 0) {
+      throw new IOException("corrupt AVL snapshot: " + count + " keys");
+    }
+    Keys keys = new Keys(i, count, frontCoded);
+    if (count == 0) {
+      keys.verify();
+    }
+    return keys;
+  }
+
+  /* the keys of a snapshot, decoded as they are asked for */
+  static class Keys implements Iterator<String> {
+    final int count;
+    private final Input in;
+    private final boolean frontCoded;
+    private int remaining;
+    private byte[] key = new byte[64];
+    private int length;
+
+    Keys(Input in, int count, boolean frontCoded) {
+      this.in = in;
+      this.count = count;
+      this.remaining = count;
+      this.frontCoded = frontCoded;
+    }
+
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    public String next() {
+      if (remaining == 0) {
+        throw new NoSuchElementException();
+      }
+      remaining--;
+      try {
+        int shared = frontCoded ? in.getVarint() : 0;
+        int rest = in.getVarint();
+        if (shared > length || rest < 0 || shared + rest < 0) {
+          throw new IOException("corrupt AVL snapshot key");
+        }
+        // grow the key only as its bytes arrive, so that a corrupt length
+        // ends in an EOFException rather than a huge allocation
+        int end = shared + rest;
+        for (int at = shared; at < end; ) {
+          if (at == key.length) {
+            key = Arrays.copyOf(key, (int) Math.min(end, 2L * key.length));
+          }
+          int n = Math.min(end, key.length) - at;
+          in.get(key, at, n);
+          at += n;
+        }
+        length = end;
+        if (remaining == 0) {
+          verify();
+        }
+      } catch (IOException exc) {
+        throw new UncheckedIOException(exc);
+      }
+      return new String(key, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /* compare the checksum of everything read with the trailer */
+    void verify() throws IOException {
+      long expected = in.checksum();
+      if ((in.getInt() & 0xffffffffL) != expected) {
+        throw new IOException("AVL snapshot checksum does not match");
+      }
+    }
+  }
+
+  /* buffered writer that keeps a running checksum */
+  private static class Output {
+    private final WritableByteChannel out;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    Output(WritableByteChannel out) {
+      this.out = out;
+    }
+
+    void put(byte b) throws IOException {
+      if (!buf.hasRemaining()) {
+        flush();
+      }
+      buf.put(b);
+    }
+
+    void putInt(int v) throws IOException {
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        put((byte) (v >>> shift));
+      }
+    }
+
+    void putVarint(int v) throws IOException {
+      while ((v & ~0x7f) != 0) {
+        put((byte) ((v & 0x7f) | 0x80));
+        v >>>= 7;
+      }
+      put((byte) v);
+    }
+
+    void put(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (!buf.hasRemaining()) {
+          flush();
+        }
+        int n = Math.min(len, buf.remaining());
+        buf.put(b, off, n);
+        off += n;
+        len -= n;
+      }
+    }
+
+    /* write the checksum of everything so far, then push it all out */
+    void finish() throws IOException {
+      crc.update(buf.array(), 0, buf.position());
+      int sum = (int) crc.getValue();
+      buf.flip();
+      write();
+      buf.clear();
+      buf.putInt(sum);
+      buf.flip();
+      write();
+    }
+
+    private void flush() throws IOException {
+      crc.update(buf.array(), 0, buf.position());
+      buf.flip();
+      write();
+      buf.clear();
+    }
+
+    private void write() throws IOException {
+      while (buf.hasRemaining()) {
+        out.write(buf);
+      }
+    }
+  }
+
+  /* buffered reader that keeps a running checksum of the bytes consumed */
+  private static class Input {
+    private final ReadableByteChannel in;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    Input(ReadableByteChannel in) {
+      this.in = in;
+      buf.flip();
+    }
+
+    byte get() throws IOException {
+      if (!buf.hasRemaining()) {
+        fill();
+      }
+      return buf.get();
+    }
+
+    int getInt() throws IOException {
+      int v = 0;
+      for (int i = 0; i < 4; i++) {
+        v = (v << 8) | (get() & 0xff);
+      }
+      return v;
+    }
+
+    int getVarint() throws IOException {
+      int v = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        byte b = get();
+        v |= (b & 0x7f) << shift;
+        if (b >= 0) {
+          return v;
+        }
+      }
+      throw new IOException("corrupt AVL snapshot varint");
+    }
+
+    void get(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (!buf.hasRemaining()) {
+          fill();
+        }
+        int n = Math.min(len, buf.remaining());
+        buf.get(b, off, n);
+        off += n;
+        len -= n;
+      }
+    }
+
+    /* checksum of every byte consumed so far */
+    long checksum() {
+      crc.update(buf.array(), 0, buf.position());
+      buf.compact().flip();
+      return crc.getValue();
+    }
+
+    /* checksum the consumed bytes, then read more */
+    private void fill() throws IOException {
+      crc.update(buf.array(), 0, buf.position());
+      buf.clear();
+      int n;
+      do {
+        n = in.read(buf);
+      } while (n == 0);
+      buf.flip();
+      if (n < 0) {
+        throw new EOFException("truncated AVL snapshot");
+      }
+    }
+  }
+}
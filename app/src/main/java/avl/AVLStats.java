@@ -0,0 +1,223 @@
+package avl;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/** optional counters of the work done by AVL trees: key comparisons,
+ * rotations, height updates and the lengths of the paths searched.
+ * They are kept only if the JVM is started with -Davl.stats=true. ENABLED
+ * is a static final, so when it is false the JIT removes the counting
+ * code, and the counters cost nothing.
+ *
+ * The counters are shared by every AVL in the JVM. They use LongAdders,
+ * so trees on different threads can be counted at the same time. */
+public final class AVLStats {
+
+  /** whether counting is on; read once, when the class is loaded */
+  public static final boolean ENABLED = Boolean.getBoolean("avl.stats");
+
+  /** number of histogram buckets; longer paths share the last one */
+  public static final int MAX_PATH = 64;
+
+  private static final String OBJECT_NAME = "avl:type=AVLStats";
+
+  private static final LongAdder comparisons = new LongAdder();
+  private static final LongAdder singleRotations = new LongAdder();
+  private static final LongAdder doubleRotations = new LongAdder();
+  private static final LongAdder heightUpdates = new LongAdder();
+  private static final LongAdder[] pathLengths = new LongAdder[MAX_PATH];
+
+  static {
+    for (int i = 0; i < MAX_PATH; i++) {
+      pathLengths[i] = new LongAdder();
+    }
+  }
+
+  private AVLStats() { }
+
+  /* a descent from the root compared w against length nodes.
+   * callers check ENABLED first */
+  static void descended(int length) {
+    comparisons.add(length);
+    pathLengths[Math.min(length, MAX_PATH - 1)].increment();
+  }
+
+  static void rotated(boolean isDouble) {
+    (isDouble ? doubleRotations : singleRotations).increment();
+  }
+
+  static void heightUpdated() {
+    heightUpdates.increment();
+  }
+
+  /** set every counter back to zero */
+  public static void reset() {
+    comparisons.reset();
+    singleRotations.reset();
+    doubleRotations.reset();
+    heightUpdates.reset();
+    for (LongAdder a : pathLengths) {
+      a.reset();
+    }
+  }
+
+  /** the counters as they are now, along with the height of tree */
+  public static Snapshot snapshot(AVL tree) {
+    long[] histogram = new long[MAX_PATH];
+    for (int i = 0; i < MAX_PATH; i++) {
+      histogram[i] = pathLengths[i].sum();
+    }
+    return new Snapshot(comparisons.sum(), singleRotations.sum(),
+        doubleRotations.sum(), heightUpdates.sum(), tree.getHeight(),
+        histogram);
+  }
+
+  /** publish the counters, and the height of tree, as the MXBean
+   * avl:type=AVLStats, replacing any tree registered before */
+  public static void register(AVL tree) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(new Bean(tree), name);
+    } catch (JMException exc) {
+      throw new IllegalStateException("could not register " + OBJECT_NAME, exc);
+    }
+  }
+
+  /** the counters at one moment */
+  public static final class Snapshot {
+    private final long comparisons;
+    private final long singleRotations;
+    private final long doubleRotations;
+    private final long heightUpdates;
+    private final int treeHeight;
+    private final long[] pathLengths;
+
+    Snapshot(long comparisons, long singleRotations, long doubleRotations,
+        long heightUpdates, int treeHeight, long[] pathLengths) {
+      this.comparisons = comparisons;
+      this.singleRotations = singleRotations;
+      this.doubleRotations = doubleRotations;
+      this.heightUpdates = heightUpdates;
+      this.treeHeight = treeHeight;
+      this.pathLengths = pathLengths;
+    }
+
+    public long getComparisons() {
+      return comparisons;
+    }
+
+    /** number of searches, insertions and removals that descended the tree */
+    public long getDescents() {
+      long n = 0;
+      for (long c : pathLengths) {
+        n += c;
+      }
+      return n;
+    }
+
+    /** mean number of nodes compared against per descent */
+    public double getMeanPathLength() {
+      long n = getDescents();
+      return n == 0 ? 0 : (double) comparisons / n;
+    }
+
+    public long getSingleRotations() {
+      return singleRotations;
+    }
+
+    public long getDoubleRotations() {
+      return doubleRotations;
+    }
+
+    public long getHeightUpdates() {
+      return heightUpdates;
+    }
+
+    public int getTreeHeight() {
+      return treeHeight;
+    }
+
+    public long[] getPathLengthHistogram() {
+      return pathLengths.clone();
+    }
+
+    /** a few lines summing up the counters, or a note that they are off */
+    public String toString() {
+      if (!ENABLED) {
+        return "AVL stats are off; run with -Davl.stats=true";
+      }
+      StringBuilder sb = new StringBuilder();
+      sb.append("comparisons: ").append(comparisons)
+          .append(String.format(" (%.2f per descent over %d descents)%n",
+              getMeanPathLength(), getDescents()));
+      sb.append("rotations: ").append(singleRotations).append(" single, ")
+          .append(doubleRotations).append(" double\n");
+      sb.append("height updates: ").append(heightUpdates).append('\n');
+      sb.append("tree height: ").append(treeHeight).append('\n');
+      sb.append("path lengths:");
+      for (int i = 0; i < pathLengths.length; i++) {
+        if (pathLengths[i] != 0) {
+          sb.append(' ').append(i).append(i == MAX_PATH - 1 ? "+" : "")
+              .append('=').append(pathLengths[i]);
+        }
+      }
+      return sb.toString();
+    }
+  }
+
+  /* the live counters as seen through JMX */
+  private static final class Bean implements AVLStatsMXBean {
+    private final AVL tree;
+
+    Bean(AVL tree) {
+      this.tree = tree;
+    }
+
+    public boolean isEnabled() {
+      return ENABLED;
+    }
+
+    public long getComparisons() {
+      return comparisons.sum();
+    }
+
+    public long getDescents() {
+      return snapshot(tree).getDescents();
+    }
+
+    public double getMeanPathLength() {
+      return snapshot(tree).getMeanPathLength();
+    }
+
+    public long getSingleRotations() {
+      return singleRotations.sum();
+    }
+
+    public long getDoubleRotations() {
+      return doubleRotations.sum();
+    }
+
+    public long getHeightUpdates() {
+      return heightUpdates.sum();
+    }
+
+    public int getTreeHeight() {
+      return tree.getHeight();
+    }
+
+    public long[] getPathLengthHistogram() {
+      return snapshot(tree).getPathLengthHistogram();
+    }
+
+    public void reset() {
+      AVLStats.reset();
+    }
+  }
+}
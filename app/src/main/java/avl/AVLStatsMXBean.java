@@ -0,0 +1,31 @@
+package avl;
+
+/** management interface of AVLStats, registered as avl:type=AVLStats so
+ * that a running dedup can be watched from jconsole or any JMX client */
+public interface AVLStatsMXBean {
+
+  /** whether the counters are being kept at all */
+  boolean isEnabled();
+
+  long getComparisons();
+
+  long getDescents();
+
+  double getMeanPathLength();
+
+  long getSingleRotations();
+
+  long getDoubleRotations();
+
+  long getHeightUpdates();
+
+  /** height of the registered tree, -1 if it is empty */
+  int getTreeHeight();
+
+  /** entry i counts the descents that compared against i nodes; the last
+   * entry also counts all longer descents */
+  long[] getPathLengthHistogram();
+
+  /** set every counter back to zero */
+  void reset();
+}
@@ -0,0 +1,114 @@
+package avl;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/** AVL tree of Strings whose nodes live in parallel arrays and are referred
+ * to by int index instead of by object reference. Freed slots are kept on a
+ * free list and reused by later insertions. */
+public class ArrayAVL extends IndexedAVL {
+
+  private String[] word;
+
+  /** constructor: empty tree with a small initial node pool */
+  public ArrayAVL() {
+    this(INITIAL_CAPACITY);
+  }
+
+  /** constructor: empty tree with room for capacity nodes before growing */
+  public ArrayAVL(int capacity) {
+    super(capacity);
+    word = new String[left.length];
+  }
+
+  /** the word stored at node n */
+  public String word(int n) {
+    return word[n];
+  }
+
+  /** find w in the tree. return the index of the node containing w or
+   * NIL if not found */
+  public int search(String w) {
+    int n = root;
+    while (n != NIL) {
+      int c = w.compareTo(word[n]);
+      if (c == 0) {
+        return n;
+      }
+      n = c < 0 ? left[n] : right[n];
+    }
+    return NIL;
+  }
+
+  /** insert w into the tree, maintaining AVL balance */
+  public void avlInsert(String w) {
+    avlInsertIfAbsent(w);
+  }
+
+  /** insert w into the tree if it is not already present, maintaining AVL
+   * balance. Returns true if w was newly inserted. */
+  public boolean avlInsertIfAbsent(String w) {
+    int p = NIL;
+    int c = 0;
+    int n = root;
+    while (n != NIL) {
+      c = w.compareTo(word[n]);
+      if (c == 0) {
+        return false;
+      }
+      p = n;
+      n = c < 0 ? left[n] : right[n];
+    }
+    n = attach(p, c < 0);
+    word[n] = w;
+    return true;
+  }
+
+  /** remove the word w from the tree. Returns true if w was present. */
+  public boolean remove(String w) {
+    int z = search(w);
+    if (z == NIL) {
+      return false;
+    }
+    removeNode(z);
+    return true;
+  }
+
+  /** visit every word in the tree in increasing order */
+  public void inOrder(Consumer<String> visitor) {
+    int n = first();
+    while (n != NIL) {
+      visitor.accept(word[n]);
+      n = successor(n);
+    }
+  }
+
+  /** print a sideways representation of the tree - root at left,
+   * right is up, left is down. */
+  public void printTree() {
+    printSubtree(root, 0);
+  }
+  private void printSubtree(int n, int level) {
+    if (n == NIL) {
+      return;
+    }
+    printSubtree(right[n], level + 1);
+    for (int i = 0; i < level; i++) {
+      System.out.print("        ");
+    }
+    System.out.println(word[n] + "(" + height[n] + ")");
+    printSubtree(left[n], level + 1);
+  }
+
+  void growKeys(int capacity) {
+    word = Arrays.copyOf(word, capacity);
+  }
+
+  void moveKey(int from, int to) {
+    word[to] = word[from];
+  }
+
+  void clearKey(int n) {
+    word[n] = null;
+  }
+}
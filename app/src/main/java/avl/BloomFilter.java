@@ -0,0 +1,111 @@
+package avl;
+
+/** Bloom filter over Strings: a set that can answer "definitely absent"
+ * in a few memory accesses, at the price of sometimes answering "maybe
+ * present" for a string that was never added. It is sized up front from
+ * the number of strings expected and the false positive rate wanted; adding
+ * many more strings than expected raises the rate. */
+public class BloomFilter {
+
+  // keeps bit indexes within what index() can spread a 32-bit hash over
+  private static final long MAX_BITS = 1L << 32;
+
+  private final long[] bits;
+  private final long numBits;
+  private final int numHashes;
+  private final double targetFpp;
+  private long added;
+
+  /** constructor: room for expected strings with a false positive rate of
+   *  about fpp, which must be strictly between 0 and 1 */
+  public BloomFilter(long expected, double fpp) {
+    if (expected < 1) {
+      throw new IllegalArgumentException("expected count must be positive, not " + expected);
+    }
+    if (!(fpp > 0 && fpp < 1)) {
+      throw new IllegalArgumentException("false positive rate must be in (0, 1), not " + fpp);
+    }
+    // the optimal sizes: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2
+    double ln2 = Math.log(2);
+    long m = (long) Math.ceil(-expected * Math.log(fpp) / (ln2 * ln2));
+    m = Math.min(Math.max(m, 64), MAX_BITS);
+    bits = new long[(int) ((m + 63) >>> 6)];
+    numBits = 64L * bits.length;
+    numHashes = Math.max(1, (int) Math.round((double) numBits / expected * ln2));
+    targetFpp = fpp;
+  }
+
+  /** record s as present */
+  public void add(String s) {
+    long h = hash(s);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32);
+    for (int i = 0; i < numHashes; i++) {
+      long bit = index(h1 + i * h2);
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+    added++;
+  }
+
+  /** return false if s was definitely never added, true if it may have
+   *  been */
+  public boolean mightContain(String s) {
+    long h = hash(s);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32);
+    for (int i = 0; i < numHashes; i++) {
+      long bit = index(h1 + i * h2);
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** add s, returning true if it was definitely absent before */
+  public boolean addIfAbsent(String s) {
+    boolean absent = !mightContain(s);
+    if (absent) {
+      add(s);
+    }
+    return absent;
+  }
+
+  /** the false positive rate the filter was sized for */
+  public double targetFpp() {
+    return targetFpp;
+  }
+
+  /** the false positive rate expected from the strings added so far */
+  public double expectedFpp() {
+    return Math.pow(1 - Math.exp(-numHashes * (double) added / numBits), numHashes);
+  }
+
+  public long numBits() {
+    return numBits;
+  }
+
+  public int numHashes() {
+    return numHashes;
+  }
+
+  /* the bit selected by one combined hash, spread over all the bits */
+  private long index(int combined) {
+    return ((combined & 0xffffffffL) * numBits) >>> 32;
+  }
+
+  /* 64-bit FNV-1a over the chars of s, finished with the MurmurHash3 mix so
+   * both halves can serve as independent hashes (Kirsch and Mitzenmacher) */
+  private static long hash(String s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      h = (h ^ s.charAt(i)) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
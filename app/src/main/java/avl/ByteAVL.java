@@ -0,0 +1,266 @@
+package avl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/** AVL tree of byte strings (for example undecoded UTF-8 lines), ordered by
+ * unsigned lexicographic comparison. Lookups compare directly against the
+ * caller's buffer; a key is only copied, into one shared byte array, when it
+ * is actually inserted.
+ *
+ * Keys are front-coded: a key is a head, which is the start of another
+ * node's key, followed by a tail of its own in the arena. A new key's
+ * in-order neighbours are on its search path, so the insertion knows which
+ * of them shares the longest prefix and only stores the rest. Lines with
+ * long common prefixes such as timestamps and host names are then largely
+ * stored once. Heads may refer to keys that have heads themselves, up to
+ * MAX_CHAIN deep, so that reading a key stays cheap. Nodes are never
+ * removed, so a node a head refers to never moves.
+ *
+ * A descent also remembers how many leading bytes the key shares with the
+ * nearest smaller and larger nodes passed so far. Every node below lies
+ * between those two, so it shares at least the shorter of the two prefixes
+ * with the key, and comparisons start after it. */
+public class ByteAVL extends IndexedAVL {
+
+  private static final int INITIAL_ARENA = 1 << 12;
+
+  // shorter shared prefixes are not worth splitting a key for
+  private static final int MIN_SHARED = 4;
+
+  // most heads followed to reach any byte of a key
+  private static final int MAX_CHAIN = 8;
+
+  // key bytes of every node, back to back
+  private byte[] arena = new byte[INITIAL_ARENA];
+  private int arenaUsed;
+
+  // a key is the first headLength bytes of node headNode's key (none if
+  // headLength is 0), then arena[tailOffset, tailOffset + tailLength)
+  private int[] headNode;
+  private int[] headLength;
+  private int[] tailOffset;
+  private int[] tailLength;
+
+  /** constructor: empty tree with a small initial node pool */
+  public ByteAVL() {
+    this(INITIAL_CAPACITY);
+  }
+
+  /** constructor: empty tree with room for capacity nodes before growing */
+  public ByteAVL(int capacity) {
+    super(capacity);
+    headNode = new int[left.length];
+    headLength = new int[left.length];
+    tailOffset = new int[left.length];
+    tailLength = new int[left.length];
+  }
+
+  /** a copy of the key stored at node n */
+  public byte[] key(int n) {
+    byte[] key = new byte[headLength[n] + tailLength[n]];
+    int end = key.length;
+    // each head holds a shorter prefix of the key than the node before
+    for (; end > 0; n = headNode[n]) {
+      int h = headLength[n];
+      System.arraycopy(arena, tailOffset[n], key, h, end - h);
+      end = h;
+    }
+    return key;
+  }
+
+  /** bytes of key data stored, after front coding */
+  public int arenaBytes() {
+    return arenaUsed;
+  }
+
+  /** find the key buf[off, off + len) in the tree. return the index of the
+   * node containing it or NIL if not found */
+  public int search(ByteBuffer buf, int off, int len) {
+    int n = root;
+    // bytes shared with the nearest smaller and larger nodes passed
+    int lo = 0;
+    int hi = 0;
+    while (n != NIL) {
+      int c = compare(buf, off, len, n, Math.min(lo, hi));
+      if (c == 0) {
+        return n;
+      } else if (c < 0) {
+        hi = -c - 1;
+        n = left[n];
+      } else {
+        lo = c - 1;
+        n = right[n];
+      }
+    }
+    return NIL;
+  }
+
+  /** find key in the tree. return the index of its node or NIL */
+  public int search(byte[] key) {
+    return search(ByteBuffer.wrap(key), 0, key.length);
+  }
+
+  /** insert a copy of the key buf[off, off + len) if it is not already
+   * present, maintaining AVL balance. Returns true if it was newly
+   * inserted. */
+  public boolean insertIfAbsent(ByteBuffer buf, int off, int len) {
+    int p = NIL;
+    int c = 0;
+    int n = root;
+    // bytes shared with, and the nodes of, the nearest smaller and larger
+    // keys passed; they end up as the new key's in-order neighbours
+    int lo = 0;
+    int hi = 0;
+    int loNode = NIL;
+    int hiNode = NIL;
+    while (n != NIL) {
+      c = compare(buf, off, len, n, Math.min(lo, hi));
+      if (c == 0) {
+        return false;
+      }
+      p = n;
+      if (c < 0) {
+        hi = -c - 1;
+        hiNode = n;
+        n = left[n];
+      } else {
+        lo = c - 1;
+        loNode = n;
+        n = right[n];
+      }
+    }
+    int shared = Math.max(lo, hi);
+    int ref = lo >= hi ? loNode : hiNode;
+    if (shared >= MIN_SHARED) {
+      // refer to the first key down the chain whose own tail holds part of
+      // the shared prefix
+      while (shared <= headLength[ref]) {
+        ref = headNode[ref];
+      }
+      if (chainLength(ref) >= MAX_CHAIN) {
+        shared = 0;
+      }
+    } else {
+      shared = 0;
+    }
+    n = attach(p, c < 0);
+    headNode[n] = shared > 0 ? ref : NIL;
+    headLength[n] = shared;
+    tailOffset[n] = store(buf, off + shared, len - shared);
+    tailLength[n] = len - shared;
+    return true;
+  }
+
+  /** insert a copy of key if it is not already present. Returns true if it
+   * was newly inserted. */
+  public boolean insertIfAbsent(byte[] key) {
+    return insertIfAbsent(ByteBuffer.wrap(key), 0, key.length);
+  }
+
+  /** visit a copy of every key in the tree in increasing order */
+  public void inOrder(Consumer<byte[]> visitor) {
+    int n = first();
+    while (n != NIL) {
+      visitor.accept(key(n));
+      n = successor(n);
+    }
+  }
+
+  /* unsigned lexicographic comparison of buf[off, off + len) with the key
+   * of node n, given that their first from bytes are equal. Returns 0 if
+   * they are equal, and otherwise the number of leading bytes they share
+   * plus one, negated if buf's key is the smaller. */
+  private int compare(ByteBuffer buf, int off, int len, int n, int from) {
+    int klen = headLength[n] + tailLength[n];
+    int common = Math.min(len, klen);
+    int i = mismatch(buf, off, n, from, common);
+    if (i < common) {
+      int c = (buf.get(off + i) & 0xff) - (byteAt(n, i) & 0xff);
+      return c < 0 ? -i - 1 : i + 1;
+    }
+    if (len == klen) {
+      return 0;
+    }
+    return len < klen ? -common - 1 : common + 1;
+  }
+
+  /* the first index in [from, end) where buf's key and node n's key differ,
+   * or end if they agree there */
+  private int mismatch(ByteBuffer buf, int off, int n, int from, int end) {
+    int h = headLength[n];
+    if (from < h) {
+      int headEnd = Math.min(end, h);
+      from = mismatch(buf, off, headNode[n], from, headEnd);
+      if (from < headEnd) {
+        return from;
+      }
+    }
+    // byte i of the key is at arena[k + i] past the head
+    for (int i = from, k = tailOffset[n] - h; i < end; i++) {
+      if (buf.get(off + i) != arena[k + i]) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  /* byte i of node n's key */
+  private byte byteAt(int n, int i) {
+    while (i < headLength[n]) {
+      n = headNode[n];
+    }
+    return arena[tailOffset[n] + i - headLength[n]];
+  }
+
+  /* number of heads followed to reach the start of node n's key */
+  private int chainLength(int n) {
+    int length = 0;
+    for (; headLength[n] > 0; n = headNode[n]) {
+      length++;
+    }
+    return length;
+  }
+
+  /* append buf[off, off + len) to the arena and return its offset */
+  private int store(ByteBuffer buf, int off, int len) {
+    if (arena.length - arenaUsed < len) {
+      long needed = (long) arenaUsed + len;
+      long capacity = Math.max((long) arena.length * 2, needed);
+      if (needed > Integer.MAX_VALUE - 8) {
+        throw new OutOfMemoryError("ByteAVL key arena is full");
+      }
+      arena = Arrays.copyOf(arena, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+    }
+    int at = arenaUsed;
+    if (buf.hasArray()) {
+      System.arraycopy(buf.array(), buf.arrayOffset() + off, arena, at, len);
+    } else {
+      for (int i = 0; i < len; i++) {
+        arena[at + i] = buf.get(off + i);
+      }
+    }
+    arenaUsed += len;
+    return at;
+  }
+
+  void growKeys(int capacity) {
+    headNode = Arrays.copyOf(headNode, capacity);
+    headLength = Arrays.copyOf(headLength, capacity);
+    tailOffset = Arrays.copyOf(tailOffset, capacity);
+    tailLength = Arrays.copyOf(tailLength, capacity);
+  }
+
+  // only called on removal, which ByteAVL does not offer; heads would
+  // otherwise have to follow the moved key
+  void moveKey(int from, int to) {
+    headNode[to] = headNode[from];
+    headLength[to] = headLength[from];
+    tailOffset[to] = tailOffset[from];
+    tailLength[to] = tailLength[from];
+  }
+
+  void clearKey(int n) {
+  }
+}
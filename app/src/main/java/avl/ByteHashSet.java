@@ -0,0 +1,176 @@
+package avl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** set of byte strings (for example undecoded UTF-8 lines) in an
+ * open-addressing hash table with linear probing. Keys are copied back to
+ * back into one shared byte array, and the table holds only the index of
+ * each key and its hash, so a probe reads two int arrays and touches key
+ * bytes only when the full hashes match. The table is kept at most half
+ * full. Keys are never removed, and there is no order. */
+public class ByteHashSet {
+
+  private static final int INITIAL_SLOTS = 1 << 10;
+  private static final int INITIAL_ARENA = 1 << 12;
+
+  // key index + 1 in each slot, 0 for an empty slot
+  private int[] slots;
+  // the full hash of the key in each slot
+  private int[] hashes;
+
+  // key i is arena[ends[i], ends[i + 1])
+  private byte[] arena = new byte[INITIAL_ARENA];
+  private int[] ends;
+  private int size;
+
+  /** constructor: empty set with a small initial table */
+  public ByteHashSet() {
+    this(INITIAL_SLOTS / 2);
+  }
+
+  /** constructor: empty set with room for expected keys before growing */
+  public ByteHashSet(int expected) {
+    int n = INITIAL_SLOTS;
+    while (n / 2 < expected && n < 1 << 30) {
+      n *= 2;
+    }
+    slots = new int[n];
+    hashes = new int[n];
+    ends = new int[n / 2 + 1];
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /** bytes of key data stored */
+  public int arenaBytes() {
+    return ends[size];
+  }
+
+  /** a copy of the i-th key inserted, counting from 0 */
+  public byte[] key(int i) {
+    return Arrays.copyOfRange(arena, ends[i], ends[i + 1]);
+  }
+
+  /** true if the key buf[off, off + len) is in the set */
+  public boolean contains(ByteBuffer buf, int off, int len) {
+    return slotOf(buf, off, len, hash(buf, off, len)) >= 0;
+  }
+
+  /** true if key is in the set */
+  public boolean contains(byte[] key) {
+    return contains(ByteBuffer.wrap(key), 0, key.length);
+  }
+
+  /** insert a copy of the key buf[off, off + len) if it is not already
+   * present. Returns true if it was newly inserted. */
+  public boolean insertIfAbsent(ByteBuffer buf, int off, int len) {
+    int h = hash(buf, off, len);
+    int s = slotOf(buf, off, len, h);
+    if (s >= 0) {
+      return false;
+    }
+    if (2 * (size + 1) > slots.length) {
+      grow();
+      s = slotOf(buf, off, len, h);
+    }
+    store(buf, off, len);
+    slots[~s] = size;
+    hashes[~s] = h;
+    return true;
+  }
+
+  /** insert a copy of key if it is not already present. Returns true if it
+   * was newly inserted. */
+  public boolean insertIfAbsent(byte[] key) {
+    return insertIfAbsent(ByteBuffer.wrap(key), 0, key.length);
+  }
+
+  /* the slot holding the key buf[off, off + len) with hash h, or if it is
+   * absent ~ the empty slot where it belongs */
+  private int slotOf(ByteBuffer buf, int off, int len, int h) {
+    int mask = slots.length - 1;
+    int s = h & mask;
+    while (slots[s] != 0) {
+      if (hashes[s] == h && equal(slots[s] - 1, buf, off, len)) {
+        return s;
+      }
+      s = (s + 1) & mask;
+    }
+    return ~s;
+  }
+
+  private boolean equal(int i, ByteBuffer buf, int off, int len) {
+    int start = ends[i];
+    if (ends[i + 1] - start != len) {
+      return false;
+    }
+    for (int j = 0; j < len; j++) {
+      if (arena[start + j] != buf.get(off + j)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* double the table, moving every key by its stored hash */
+  private void grow() {
+    if (slots.length == 1 << 30) {
+      throw new OutOfMemoryError("ByteHashSet table is full");
+    }
+    int[] oldSlots = slots;
+    int[] oldHashes = hashes;
+    slots = new int[2 * oldSlots.length];
+    hashes = new int[slots.length];
+    int mask = slots.length - 1;
+    for (int i = 0; i < oldSlots.length; i++) {
+      if (oldSlots[i] != 0) {
+        int s = oldHashes[i] & mask;
+        while (slots[s] != 0) {
+          s = (s + 1) & mask;
+        }
+        slots[s] = oldSlots[i];
+        hashes[s] = oldHashes[i];
+      }
+    }
+    ends = Arrays.copyOf(ends, slots.length / 2 + 1);
+  }
+
+  /* append buf[off, off + len) to the arena as key number size */
+  private void store(ByteBuffer buf, int off, int len) {
+    int at = ends[size];
+    if (arena.length - at < len) {
+      long needed = (long) at + len;
+      long capacity = Math.max((long) arena.length * 2, needed);
+      if (needed > Integer.MAX_VALUE - 8) {
+        throw new OutOfMemoryError("ByteHashSet key arena is full");
+      }
+      arena = Arrays.copyOf(arena, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+    }
+    if (buf.hasArray()) {
+      System.arraycopy(buf.array(), buf.arrayOffset() + off, arena, at, len);
+    } else {
+      for (int i = 0; i < len; i++) {
+        arena[at + i] = buf.get(off + i);
+      }
+    }
+    ends[++size] = at + len;
+  }
+
+  /* 32-bit FNV-1a, finished with the MurmurHash3 mix so that the low bits
+   * used to pick a slot depend on every byte */
+  private static int hash(ByteBuffer buf, int off, int len) {
+    int h = 0x811c9dc5;
+    for (int i = 0; i < len; i++) {
+      h = (h ^ (buf.get(off + i) & 0xff)) * 0x01000193;
+    }
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
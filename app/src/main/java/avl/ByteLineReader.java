@@ -0,0 +1,121 @@
+package avl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** splits an input stream into lines without decoding them. Lines end at
+ * '\n', and a '\r' right before it is dropped too. A final line with no
+ * terminator is still reported. */
+public class ByteLineReader implements LineReader {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InputStream in;
+
+  private byte[] buf = new byte[BUFFER_SIZE];
+  private ByteBuffer view = ByteBuffer.wrap(buf);
+
+  private int start; // first byte of the next unread line
+  private int end;   // end of the valid bytes in buf
+  private int scan;  // next byte to check for '\n'
+  private boolean eof;
+
+  private int lineStart;
+  private int lineLength;
+
+  /** constructor: read lines from in */
+  public ByteLineReader(InputStream in) {
+    this.in = in;
+  }
+
+  /** advance to the next line. Returns false once the stream is
+   * exhausted. */
+  public boolean nextLine() throws IOException {
+    return advance(null);
+  }
+
+  /** the buffer holding the current line */
+  public ByteBuffer buffer() {
+    return view;
+  }
+
+  /** position of the current line in buffer() */
+  public int lineStart() {
+    return lineStart;
+  }
+
+  /** length in bytes of the current line, without its terminator */
+  public int lineLength() {
+    return lineLength;
+  }
+
+  /** the current line decoded as UTF-8 */
+  public String line() {
+    return new String(buf, lineStart, lineLength, StandardCharsets.UTF_8);
+  }
+
+  /** pass every remaining line to handler, in order. Returns the number of
+   * lines read. */
+  public long forEachLine(LineHandler handler) throws IOException {
+    long lines = 0;
+    while (advance(handler)) {
+      handler.line(view, lineStart, lineLength);
+      lines++;
+    }
+    return lines;
+  }
+
+  /* advance to the next line, reading more of the stream as needed. If
+   * handler is not null, it is told before each read that every line so
+   * far has been handled. */
+  private boolean advance(LineHandler handler) throws IOException {
+    while (true) {
+      while (scan < end) {
+        if (buf[scan] == '\n') {
+          setLine(start, scan);
+          start = ++scan;
+          return true;
+        }
+        scan++;
+      }
+      if (eof) {
+        if (start < end) {
+          setLine(start, end);
+          start = end;
+          return true;
+        }
+        return false;
+      }
+      if (start > 0) {
+        // slide the partial line down to make room
+        System.arraycopy(buf, start, buf, 0, end - start);
+        end -= start;
+        scan -= start;
+        start = 0;
+      } else if (end == buf.length) {
+        // a single line fills the buffer
+        buf = Arrays.copyOf(buf, buf.length * 2);
+        view = ByteBuffer.wrap(buf);
+      }
+      if (handler != null) {
+        handler.drained();
+      }
+      int read = in.read(buf, end, buf.length - end);
+      if (read < 0) {
+        eof = true;
+      } else {
+        end += read;
+      }
+    }
+  }
+
+  /* make the line from start up to the terminator at end current, minus a
+   * trailing '\r' */
+  private void setLine(int start, int end) {
+    lineStart = start;
+    lineLength = end > start && buf[end - 1] == '\r' ? end - start - 1 : end - start;
+  }
+}
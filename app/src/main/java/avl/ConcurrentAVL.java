@@ -0,0 +1,587 @@
+package avl;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+/** AVL tree of Strings that any number of threads can insert into and
+ * query at the same time. It follows the optimistic concurrent AVL tree of
+ * Bronson, Casper, Chafi and Olukotun (PPoPP 2010), restricted to
+ * insertion.
+ *
+ * Lookups take no locks. Each node has a version number, and a rotation
+ * that shrinks the key range below a node marks the node while it runs and
+ * bumps the version when it is done. A reader remembers the version of each
+ * node it passes and retries from the parent if a node changed under it.
+ *
+ * An insertion takes the lock of the node it attaches the new leaf to.
+ * Heights are then repaired bottom-up, and each rotation locks only the
+ * parent and the two or three nodes it moves. Balance can be briefly
+ * relaxed while other threads are repairing, but the tree is a proper AVL
+ * tree again whenever no insertion is in progress. */
+public class ConcurrentAVL {
+
+  // version bit set while a rotation shrinks a node's key range
+  private static final long SHRINKING = 1L;
+
+  // spins before a reader blocks on a node that is being rotated
+  private static final int SPIN_COUNT = 100;
+
+  // results of nodeCondition that are not a new height
+  private static final int NOTHING_REQUIRED = -1;
+  private static final int REBALANCE_REQUIRED = -2;
+
+  // returned by the attempt methods when they must restart from the parent
+  private static final Object RETRY = new Object();
+  private static final Object NOT_FOUND = new Object();
+
+  // sentinel whose right child is the root; it is never rotated
+  private final Node rootHolder = new Node(null, 0, null);
+
+  private final LongAdder size = new LongAdder();
+
+  public int getSize() {
+    return size.intValue();
+  }
+
+  /** return true if w is in the tree */
+  public boolean contains(String w) {
+    return w.equals(find(w, true));
+  }
+
+  /** the smallest word in the tree that is at least w, or null if none */
+  public String ceiling(String w) {
+    return find(w, true);
+  }
+
+  /** the smallest word in the tree that is greater than w, or null */
+  public String higher(String w) {
+    return find(w, false);
+  }
+
+  /** the smallest word in the tree, or null if the tree is empty */
+  public String first() {
+    return ceiling("");
+  }
+
+  /** iterate over the words in increasing order. Each step is a separate
+   * lookup, so words inserted during the iteration are seen if they sort
+   * after the current position. */
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private String next = first();
+
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      public String next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        String w = next;
+        next = higher(w);
+        return w;
+      }
+    };
+  }
+
+  /** insert w into the tree if it is not already present. Returns true if
+   * w was newly inserted. */
+  public boolean avlInsertIfAbsent(String w) {
+    while (true) {
+      Node right = rootHolder.right;
+      if (right == null) {
+        synchronized (rootHolder) {
+          if (rootHolder.right == null) {
+            rootHolder.right = new Node(w, 1, rootHolder);
+            size.increment();
+            return true;
+          }
+        }
+      } else {
+        long ovl = right.version;
+        if (isShrinking(ovl)) {
+          waitUntilNotChanging(right);
+        } else if (right == rootHolder.right) {
+          Object result = attemptInsert(w, right, ovl);
+          if (result != RETRY) {
+            return result == Boolean.TRUE;
+          }
+        }
+      }
+    }
+  }
+
+  /** height of the tree, counting a single node as 0 */
+  int height() {
+    Node right = rootHolder.right;
+    return right == null ? -1 : right.height - 1;
+  }
+
+  /* search from the root for w. If inclusive, return w itself when it is
+   * present; otherwise return the smallest word greater than w, or null. */
+  private String find(String w, boolean inclusive) {
+    while (true) {
+      Node right = rootHolder.right;
+      if (right == null) {
+        return null;
+      }
+      int c = w.compareTo(right.key);
+      if (c == 0 && inclusive) {
+        return right.key;
+      }
+      long ovl = right.version;
+      if (isShrinking(ovl)) {
+        waitUntilNotChanging(right);
+      } else if (right == rootHolder.right) {
+        String best = c < 0 ? right.key : null;
+        Object result = attemptFind(w, inclusive, right, c < 0 ? -1 : 1, ovl, best);
+        if (result != RETRY) {
+          return result == NOT_FOUND ? null : (String) result;
+        }
+      }
+    }
+  }
+
+  /* continue a search below node, whose version was nodeOVL when it was
+   * reached. best is the smallest word seen so far that is past w. */
+  private Object attemptFind(String w, boolean inclusive, Node node, int dir,
+      long nodeOVL, String best) {
+    while (true) {
+      Node child = node.child(dir);
+      if (node.version != nodeOVL) {
+        return RETRY;
+      }
+      if (child == null) {
+        return best == null ? NOT_FOUND : best;
+      }
+      int c = w.compareTo(child.key);
+      if (c == 0 && inclusive) {
+        return child.key;
+      }
+      long childOVL = child.version;
+      if (isShrinking(childOVL)) {
+        waitUntilNotChanging(child);
+      } else if (child == node.child(dir)) {
+        if (node.version != nodeOVL) {
+          return RETRY;
+        }
+        Object result = attemptFind(w, inclusive, child, c < 0 ? -1 : 1,
+            childOVL, c < 0 ? child.key : best);
+        if (result != RETRY) {
+          return result;
+        }
+      }
+    }
+  }
+
+  /* continue an insertion below node, whose version was nodeOVL when it was
+   * reached. Returns TRUE, FALSE or RETRY. */
+  private Object attemptInsert(String w, Node node, long nodeOVL) {
+    while (true) {
+      int c = w.compareTo(node.key);
+      if (c == 0) {
+        return Boolean.FALSE;
+      }
+      int dir = c < 0 ? -1 : 1;
+      Node child = node.child(dir);
+      if (node.version != nodeOVL) {
+        return RETRY;
+      }
+      if (child == null) {
+        synchronized (node) {
+          if (node.version != nodeOVL) {
+            return RETRY;
+          }
+          if (node.child(dir) == null) {
+            node.setChild(dir, new Node(w, 1, node));
+            child = null;
+          } else {
+            // lost a race to attach here; look again
+            child = node.child(dir);
+          }
+        }
+        if (child == null) {
+          size.increment();
+          fixHeightAndRebalance(node);
+          return Boolean.TRUE;
+        }
+      } else {
+        long childOVL = child.version;
+        if (isShrinking(childOVL)) {
+          waitUntilNotChanging(child);
+        } else if (child == node.child(dir)) {
+          if (node.version != nodeOVL) {
+            return RETRY;
+          }
+          Object result = attemptInsert(w, child, childOVL);
+          if (result != RETRY) {
+            return result;
+          }
+        }
+      }
+    }
+  }
+
+  /* repair heights and balance from node up towards the root */
+  private void fixHeightAndRebalance(Node node) {
+    while (node != null && node.parent != null) {
+      int condition = nodeCondition(node);
+      if (condition == NOTHING_REQUIRED) {
+        return;
+      }
+      if (condition != REBALANCE_REQUIRED) {
+        synchronized (node) {
+          node = fixHeight(node);
+        }
+      } else {
+        Node nParent = node.parent;
+        synchronized (nParent) {
+          if (node.parent == nParent) {
+            synchronized (node) {
+              node = rebalance(nParent, node);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /* what node needs: NOTHING_REQUIRED, REBALANCE_REQUIRED or a new height */
+  private static int nodeCondition(Node node) {
+    int hN = node.height;
+    int hL0 = height(node.left);
+    int hR0 = height(node.right);
+    int hNRepl = 1 + Math.max(hL0, hR0);
+    int bal = hL0 - hR0;
+    if (bal < -1 || bal > 1) {
+      return REBALANCE_REQUIRED;
+    }
+    return hN != hNRepl ? hNRepl : NOTHING_REQUIRED;
+  }
+
+  /* fix node's height. Returns the next node to examine, or null.
+   * precondition: node is locked */
+  private static Node fixHeight(Node node) {
+    int c = nodeCondition(node);
+    if (c == REBALANCE_REQUIRED) {
+      return node;
+    } else if (c == NOTHING_REQUIRED) {
+      return null;
+    }
+    node.height = c;
+    return node.parent;
+  }
+
+  /* fix n's height or balance. Returns the next node to examine, or null.
+   * precondition: nParent and n are locked */
+  private Node rebalance(Node nParent, Node n) {
+    Node nL = n.left;
+    Node nR = n.right;
+    int hN = n.height;
+    int hL0 = height(nL);
+    int hR0 = height(nR);
+    int hNRepl = 1 + Math.max(hL0, hR0);
+    int bal = hL0 - hR0;
+    if (bal > 1) {
+      return rebalanceToRight(nParent, n, nL, hR0);
+    } else if (bal < -1) {
+      return rebalanceToLeft(nParent, n, nR, hL0);
+    } else if (hNRepl != hN) {
+      n.height = hNRepl;
+      return fixHeight(nParent);
+    }
+    return null;
+  }
+
+  /* precondition: nParent and n are locked and n is left-heavy */
+  private Node rebalanceToRight(Node nParent, Node n, Node nL, int hR0) {
+    synchronized (nL) {
+      int hL = nL.height;
+      if (hL - hR0 <= 1) {
+        return n; // nL changed before we locked it; look again
+      }
+      Node nLR = nL.right;
+      int hLL0 = height(nL.left);
+      int hLR0 = height(nLR);
+      if (hLL0 >= hLR0) {
+        return rotateRight(nParent, n, nL, hR0, hLL0, nLR, hLR0);
+      }
+      synchronized (nLR) {
+        int hLR = nLR.height;
+        if (hLL0 >= hLR) {
+          return rotateRight(nParent, n, nL, hR0, hLL0, nLR, hLR);
+        }
+        int hLRL = height(nLR.left);
+        int b = hLL0 - hLRL;
+        if (b >= -1 && b <= 1) {
+          return rotateRightOverLeft(nParent, n, nL, hR0, hLL0, nLR, hLRL);
+        }
+      }
+      // nL must be rotated left first
+      return rebalanceToLeft(n, nL, nLR, hLL0);
+    }
+  }
+
+  /* precondition: nParent and n are locked and n is right-heavy */
+  private Node rebalanceToLeft(Node nParent, Node n, Node nR, int hL0) {
+    synchronized (nR) {
+      int hR = nR.height;
+      if (hL0 - hR >= -1) {
+        return n; // nR changed before we locked it; look again
+      }
+      Node nRL = nR.left;
+      int hRL0 = height(nRL);
+      int hRR0 = height(nR.right);
+      if (hRR0 >= hRL0) {
+        return rotateLeft(nParent, n, hL0, nR, nRL, hRL0, hRR0);
+      }
+      synchronized (nRL) {
+        int hRL = nRL.height;
+        if (hRR0 >= hRL) {
+          return rotateLeft(nParent, n, hL0, nR, nRL, hRL, hRR0);
+        }
+        int hRLR = height(nRL.right);
+        int b = hRR0 - hRLR;
+        if (b >= -1 && b <= 1) {
+          return rotateLeftOverRight(nParent, n, hL0, nR, nRL, hRR0, hRLR);
+        }
+      }
+      // nR must be rotated right first
+      return rebalanceToRight(n, nR, nRL, hRR0);
+    }
+  }
+
+  /* precondition: nParent, n and nL are locked */
+  private Node rotateRight(Node nParent, Node n, Node nL, int hR, int hLL,
+      Node nLR, int hLR) {
+    long nodeOVL = n.version;
+    Node nPL = nParent.left;
+    n.version = beginChange(nodeOVL);
+
+    n.left = nLR;
+    if (nLR != null) {
+      nLR.parent = n;
+    }
+    nL.right = n;
+    n.parent = nL;
+    if (nPL == n) {
+      nParent.left = nL;
+    } else {
+      nParent.right = nL;
+    }
+    nL.parent = nParent;
+
+    int hNRepl = 1 + Math.max(hLR, hR);
+    n.height = hNRepl;
+    nL.height = 1 + Math.max(hLL, hNRepl);
+    n.version = endChange(nodeOVL);
+
+    int balN = hLR - hR;
+    if (balN < -1 || balN > 1) {
+      return n;
+    }
+    int balL = hLL - hNRepl;
+    if (balL < -1 || balL > 1) {
+      return nL;
+    }
+    return fixHeight(nParent);
+  }
+
+  /* precondition: nParent, n and nR are locked */
+  private Node rotateLeft(Node nParent, Node n, int hL, Node nR, Node nRL,
+      int hRL, int hRR) {
+    long nodeOVL = n.version;
+    Node nPL = nParent.left;
+    n.version = beginChange(nodeOVL);
+
+    n.right = nRL;
+    if (nRL != null) {
+      nRL.parent = n;
+    }
+    nR.left = n;
+    n.parent = nR;
+    if (nPL == n) {
+      nParent.left = nR;
+    } else {
+      nParent.right = nR;
+    }
+    nR.parent = nParent;
+
+    int hNRepl = 1 + Math.max(hL, hRL);
+    n.height = hNRepl;
+    nR.height = 1 + Math.max(hNRepl, hRR);
+    n.version = endChange(nodeOVL);
+
+    int balN = hRL - hL;
+    if (balN < -1 || balN > 1) {
+      return n;
+    }
+    int balR = hRR - hNRepl;
+    if (balR < -1 || balR > 1) {
+      return nR;
+    }
+    return fixHeight(nParent);
+  }
+
+  /* precondition: nParent, n, nL and nLR are locked */
+  private Node rotateRightOverLeft(Node nParent, Node n, Node nL, int hR,
+      int hLL, Node nLR, int hLRL) {
+    long nodeOVL = n.version;
+    long leftOVL = nL.version;
+    Node nPL = nParent.left;
+    Node nLRL = nLR.left;
+    Node nLRR = nLR.right;
+    int hLRR = height(nLRR);
+    n.version = beginChange(nodeOVL);
+    nL.version = beginChange(leftOVL);
+
+    n.left = nLRR;
+    if (nLRR != null) {
+      nLRR.parent = n;
+    }
+    nL.right = nLRL;
+    if (nLRL != null) {
+      nLRL.parent = nL;
+    }
+    nLR.left = nL;
+    nL.parent = nLR;
+    nLR.right = n;
+    n.parent = nLR;
+    if (nPL == n) {
+      nParent.left = nLR;
+    } else {
+      nParent.right = nLR;
+    }
+    nLR.parent = nParent;
+
+    int hNRepl = 1 + Math.max(hLRR, hR);
+    n.height = hNRepl;
+    int hLRepl = 1 + Math.max(hLL, hLRL);
+    nL.height = hLRepl;
+    nLR.height = 1 + Math.max(hLRepl, hNRepl);
+    n.version = endChange(nodeOVL);
+    nL.version = endChange(leftOVL);
+
+    int balN = hLRR - hR;
+    if (balN < -1 || balN > 1) {
+      return n;
+    }
+    int balLR = hLRepl - hNRepl;
+    if (balLR < -1 || balLR > 1) {
+      return nLR;
+    }
+    return fixHeight(nParent);
+  }
+
+  /* precondition: nParent, n, nR and nRL are locked */
+  private Node rotateLeftOverRight(Node nParent, Node n, int hL, Node nR,
+      Node nRL, int hRR, int hRLR) {
+    long nodeOVL = n.version;
+    long rightOVL = nR.version;
+    Node nPL = nParent.left;
+    Node nRLL = nRL.left;
+    Node nRLR = nRL.right;
+    int hRLL = height(nRLL);
+    n.version = beginChange(nodeOVL);
+    nR.version = beginChange(rightOVL);
+
+    n.right = nRLL;
+    if (nRLL != null) {
+      nRLL.parent = n;
+    }
+    nR.left = nRLR;
+    if (nRLR != null) {
+      nRLR.parent = nR;
+    }
+    nRL.right = nR;
+    nR.parent = nRL;
+    nRL.left = n;
+    n.parent = nRL;
+    if (nPL == n) {
+      nParent.left = nRL;
+    } else {
+      nParent.right = nRL;
+    }
+    nRL.parent = nParent;
+
+    int hNRepl = 1 + Math.max(hL, hRLL);
+    n.height = hNRepl;
+    int hRRepl = 1 + Math.max(hRLR, hRR);
+    nR.height = hRRepl;
+    nRL.height = 1 + Math.max(hNRepl, hRRepl);
+    n.version = endChange(nodeOVL);
+    nR.version = endChange(rightOVL);
+
+    int balN = hRLL - hL;
+    if (balN < -1 || balN > 1) {
+      return n;
+    }
+    int balRL = hRRepl - hNRepl;
+    if (balRL < -1 || balRL > 1) {
+      return nRL;
+    }
+    return fixHeight(nParent);
+  }
+
+  private static int height(Node n) {
+    return n == null ? 0 : n.height;
+  }
+
+  private static boolean isShrinking(long ovl) {
+    return (ovl & SHRINKING) != 0;
+  }
+
+  private static long beginChange(long ovl) {
+    return ovl | SHRINKING;
+  }
+
+  private static long endChange(long ovl) {
+    // clears SHRINKING and bumps the count held in the higher bits
+    return (ovl | SHRINKING) + 1;
+  }
+
+  /* wait for a rotation that is shrinking n to finish */
+  private static void waitUntilNotChanging(Node n) {
+    long ovl = n.version;
+    if (isShrinking(ovl)) {
+      for (int i = 0; i < SPIN_COUNT; i++) {
+        if (n.version != ovl) {
+          return;
+        }
+      }
+      // the rotating thread holds n's lock until it is done
+      synchronized (n) { }
+    }
+  }
+
+  /** a tree node. Heights here count a leaf as 1 and an empty subtree as 0,
+   * as in the paper. */
+  private static class Node {
+    final String key;
+    volatile int height;
+    volatile long version;
+    volatile Node parent;
+    volatile Node left;
+    volatile Node right;
+
+    Node(String key, int height, Node parent) {
+      this.key = key;
+      this.height = height;
+      this.parent = parent;
+    }
+
+    Node child(int dir) {
+      return dir < 0 ? left : right;
+    }
+
+    void setChild(int dir, Node n) {
+      if (dir < 0) {
+        left = n;
+      } else {
+        right = n;
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package avl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/** counts unique lines when they may not all fit in memory. Lines go into
+ * an AVL until its estimated size reaches a memory budget. The tree is then
+ * written to disk as a sorted run (an AVLSnapshot) and a new tree started.
+ * At the end the runs and the last tree are merged in one k-way pass, each
+ * run read through its own buffer, and equal lines from different runs are
+ * counted once. */
+public class ExternalUnique {
+
+  // rough heap bytes per line beyond its characters: the node, the String
+  // and the String's array header
+  static final int LINE_OVERHEAD = 96;
+
+  private ExternalUnique() { }
+
+  /** return the number of unique lines in lines, keeping at most about
+   * budget bytes of them in memory and spilling the rest to run files in
+   * dir, which are deleted before returning. If sorted is not null it is
+   * given every unique line in increasing order. */
+  public static long count(Iterator<String> lines, long budget, Path dir,
+      Consumer<String> sorted) throws IOException {
+    List<Path> runs = new ArrayList<Path>();
+    try {
+      AVL tree = new AVL();
+      long used = 0;
+      while (lines.hasNext()) {
+        String line = lines.next();
+        if (tree.avlInsertIfAbsent(line)) {
+          used += LINE_OVERHEAD + 2L * line.length();
+          if (used >= budget) {
+            runs.add(spill(tree, dir));
+            tree = new AVL();
+            used = 0;
+          }
+        }
+      }
+      if (runs.isEmpty()) {
+        if (sorted != null) {
+          tree.forEach(sorted);
+        }
+        return tree.getSize();
+      }
+      return merge(runs, tree, sorted);
+    } finally {
+      for (Path run : runs) {
+        Files.deleteIfExists(run);
+      }
+    }
+  }
+
+  /* write tree to a new run file in dir */
+  private static Path spill(AVL tree, Path dir) throws IOException {
+    Path run = Files.createTempFile(dir, "unique-run", ".avl");
+    try (FileChannel ch = FileChannel.open(run, StandardOpenOption.WRITE)) {
+      AVLSnapshot.save(tree, ch, true);
+    }
+    return run;
+  }
+
+  /* merge the runs and the words of last, counting each word once */
+  private static long merge(List<Path> runs, AVL last, Consumer<String> sorted)
+      throws IOException {
+    List<FileChannel> channels = new ArrayList<FileChannel>();
+    PriorityQueue<Head> heads = new PriorityQueue<Head>();
+    try {
+      for (Path run : runs) {
+        FileChannel ch = FileChannel.open(run, StandardOpenOption.READ);
+        channels.add(ch);
+        Head.push(heads, AVLSnapshot.keys(ch));
+      }
+      Head.push(heads, last.iterator());
+      long count = 0;
+      String prev = null;
+      while (!heads.isEmpty()) {
+        Head h = heads.poll();
+        if (!h.word.equals(prev)) {
+          count++;
+          prev = h.word;
+          if (sorted != null) {
+            sorted.accept(prev);
+          }
+        }
+        Head.push(heads, h.rest);
+      }
+      return count;
+    } catch (UncheckedIOException exc) {
+      throw exc.getCause();
+    } finally {
+      for (FileChannel ch : channels) {
+        ch.close();
+      }
+    }
+  }
+
+  /** the next word of a run, ordered by that word */
+  private static class Head implements Comparable<Head> {
+    final String word;
+    final Iterator<String> rest;
+
+    Head(String word, Iterator<String> rest) {
+      this.word = word;
+      this.rest = rest;
+    }
+
+    /* add the next word of run to heads, if it has one */
+    static void push(PriorityQueue<Head> heads, Iterator<String> run) {
+      if (run.hasNext()) {
+        heads.add(new Head(run.next(), run));
+      }
+    }
+
+    public int compareTo(Head other) {
+      return word.compareTo(other.word);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package avl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/** AVL tree of keys of any type, ordered by a Comparator, with nodes in
+ * parallel arrays like ArrayAVL. For long or int keys, LongAVL and IntAVL
+ * avoid boxing each key. */
+public class GenericAVL<K> extends IndexedAVL {
+
+  private final Comparator<? super K> comparator;
+
+  private Object[] key;
+
+  /** constructor: empty tree of Comparable keys in their natural order */
+  @SuppressWarnings("unchecked")
+  public GenericAVL() {
+    this((Comparator<? super K>) Comparator.naturalOrder());
+  }
+
+  /** constructor: empty tree of keys ordered by comparator */
+  public GenericAVL(Comparator<? super K> comparator) {
+    this(comparator, INITIAL_CAPACITY);
+  }
+
+  /** constructor: empty tree ordered by comparator with room for capacity
+   * nodes before growing */
+  public GenericAVL(Comparator<? super K> comparator, int capacity) {
+    super(capacity);
+    this.comparator = comparator;
+    key = new Object[left.length];
+  }
+
+  /** the key stored at node n */
+  @SuppressWarnings("unchecked")
+  public K key(int n) {
+    return (K) key[n];
+  }
+
+  /** find k in the tree. return the index of the node containing k or
+   * NIL if not found */
+  public int search(K k) {
+    int n = root;
+    while (n != NIL) {
+      int c = comparator.compare(k, key(n));
+      if (c == 0) {
+        return n;
+      }
+      n = c < 0 ? left[n] : right[n];
+    }
+    return NIL;
+  }
+
+  /** insert k into the tree, maintaining AVL balance */
+  public void avlInsert(K k) {
+    avlInsertIfAbsent(k);
+  }
+
+  /** insert k into the tree if it is not already present, maintaining AVL
+   * balance. Returns true if k was newly inserted. */
+  public boolean avlInsertIfAbsent(K k) {
+    int p = NIL;
+    int c = 0;
+    int n = root;
+    while (n != NIL) {
+      c = comparator.compare(k, key(n));
+      if (c == 0) {
+        return false;
+      }
+      p = n;
+      n = c < 0 ? left[n] : right[n];
+    }
+    n = attach(p, c < 0);
+    key[n] = k;
+    return true;
+  }
+
+  /** remove k from the tree. Returns true if k was present. */
+  public boolean remove(K k) {
+    int z = search(k);
+    if (z == NIL) {
+      return false;
+    }
+    removeNode(z);
+    return true;
+  }
+
+  /** visit every key in the tree in increasing order */
+  public void inOrder(Consumer<? super K> visitor) {
+    int n = first();
+    while (n != NIL) {
+      visitor.accept(key(n));
+      n = successor(n);
+    }
+  }
+
+  void growKeys(int capacity) {
+    key = Arrays.copyOf(key, capacity);
+  }
+
+  void moveKey(int from, int to) {
+    key[to] = key[from];
+  }
+
+  void clearKey(int n) {
+    key[n] = null;
+  }
+}
@@ -0,0 +1,125 @@
+package avl;
+
+import java.nio.ByteBuffer;
+
+/** HyperLogLog sketch (Flajolet, Fusy, Gandouet and Meunier, 2007) that
+ * estimates how many distinct lines it has seen in a fixed 2^precision
+ * bytes, whatever the input size. The relative standard error is about
+ * 1.04 / sqrt(2^precision), so precision 14 gives 16KB and 0.81%.
+ * Sketches of the same precision can be merged, so parts of an input can be
+ * sketched separately and combined. */
+public class HyperLogLog implements LineHandler {
+
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 18;
+  public static final int DEFAULT_PRECISION = 14;
+
+  private final int precision;
+  private final byte[] registers;
+
+  /** constructor: empty sketch with DEFAULT_PRECISION */
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /** constructor: empty sketch of 2^precision registers */
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("precision must be from " + MIN_PRECISION
+          + " to " + MAX_PRECISION + ", not " + precision);
+    }
+    this.precision = precision;
+    registers = new byte[1 << precision];
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  /** bytes of memory used by the registers */
+  public int sizeInBytes() {
+    return registers.length;
+  }
+
+  /** relative standard error of the estimate */
+  public double standardError() {
+    return 1.04 / Math.sqrt(registers.length);
+  }
+
+  /** add the line buf[off, off + len) to the sketch */
+  public void line(ByteBuffer buf, int off, int len) {
+    // 64-bit FNV-1a, finished with the MurmurHash3 mix
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < len; i++) {
+      h = (h ^ (buf.get(off + i) & 0xff)) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    add(h);
+  }
+
+  /** add the bytes of b to the sketch */
+  public void add(byte[] b) {
+    line(ByteBuffer.wrap(b), 0, b.length);
+  }
+
+  /* the top precision bits pick a register, which keeps the longest run of
+   * leading zeros, plus one, seen in the remaining bits */
+  private void add(long hash) {
+    int index = (int) (hash >>> (64 - precision));
+    // the sentinel bit caps the rank at 64 - precision + 1
+    long rest = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /** fold other into this sketch, which then estimates the number of
+   *  distinct lines seen by either. Throws IllegalArgumentException if the
+   *  precisions differ. */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("cannot merge precision " + other.precision
+          + " into precision " + precision);
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  /** the estimated number of distinct lines added */
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte r : registers) {
+      sum += 1.0 / (1L << r);
+      if (r == 0) {
+        zeros++;
+      }
+    }
+    double alpha;
+    if (m == 16) {
+      alpha = 0.673;
+    } else if (m == 32) {
+      alpha = 0.697;
+    } else if (m == 64) {
+      alpha = 0.709;
+    } else {
+      alpha = 0.7213 / (1 + 1.079 / m);
+    }
+    double e = alpha * m * m / sum;
+    if (e <= 2.5 * m && zeros > 0) {
+      // small range: linear counting over the empty registers is better
+      e = m * Math.log((double) m / zeros);
+    }
+    // with 64-bit hashes there is no large range correction
+    return Math.round(e);
+  }
+}
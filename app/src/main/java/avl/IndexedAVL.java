@@ -0,0 +1,282 @@
+package avl;
+
+import java.util.Arrays;
+
+/** Shape of an AVL tree whose nodes live in parallel int arrays and are
+ * referred to by index. Subclasses store the keys in arrays of their own,
+ * indexed the same way, and do their own key comparisons; this class does
+ * node allocation, linking, rotations and height maintenance. */
+abstract class IndexedAVL {
+
+  /** index standing for "no node" */
+  public static final int NIL = -1;
+
+  static final int INITIAL_CAPACITY = 16;
+
+  int[] left;
+  int[] right;
+  int[] parent;
+  int[] height;
+
+  int root = NIL;
+
+  // next never-used slot; slots below this are either in the tree or free
+  private int used;
+
+  // head of the free list, chained through right[]
+  private int free = NIL;
+
+  int size;
+
+  /** constructor: empty tree with room for capacity nodes before growing */
+  IndexedAVL(int capacity) {
+    capacity = Math.max(capacity, 1);
+    left = new int[capacity];
+    right = new int[capacity];
+    parent = new int[capacity];
+    height = new int[capacity];
+  }
+
+  /* grow the subclass's key arrays to hold capacity nodes */
+  abstract void growKeys(int capacity);
+
+  /* copy the key of node from into node to */
+  abstract void moveKey(int from, int to);
+
+  /* drop any reference held by the key of a freed node */
+  abstract void clearKey(int n);
+
+  public int getSize() {
+    return size;
+  }
+
+  /** index of the root node, or NIL if the tree is empty */
+  public int getRoot() {
+    return root;
+  }
+
+  /** left child of node n, or NIL */
+  public int left(int n) {
+    return left[n];
+  }
+
+  /** right child of node n, or NIL */
+  public int right(int n) {
+    return right[n];
+  }
+
+  /** parent of node n, or NIL for the root */
+  public int parent(int n) {
+    return parent[n];
+  }
+
+  /** height of node n; a leaf has height 0 and NIL has height -1 */
+  public int height(int n) {
+    return n == NIL ? -1 : height[n];
+  }
+
+  /** index of the node holding the smallest key, or NIL if empty */
+  public int first() {
+    int n = root;
+    if (n == NIL) {
+      return NIL;
+    }
+    while (left[n] != NIL) {
+      n = left[n];
+    }
+    return n;
+  }
+
+  /** index of the in-order successor of node n, or NIL if n is the last */
+  public int successor(int n) {
+    if (right[n] != NIL) {
+      n = right[n];
+      while (left[n] != NIL) {
+        n = left[n];
+      }
+      return n;
+    }
+    int p = parent[n];
+    while (p != NIL && n == right[p]) {
+      n = p;
+      p = parent[p];
+    }
+    return p;
+  }
+
+  /* add a new leaf as the left or right child of p (or as the root if p is
+   * NIL) and rebalance. Returns the new node's index; the caller stores its
+   * key. Rebalancing never moves a key between nodes, so the index stays
+   * valid. */
+  int attach(int p, boolean toLeft) {
+    int n = allocate(p);
+    size++;
+    if (p == NIL) {
+      root = n;
+      return n;
+    }
+    if (toLeft) {
+      left[p] = n;
+    } else {
+      right[p] = n;
+    }
+
+    // retrace until a height is unchanged or one rotation restores balance
+    while (p != NIL) {
+      int oldHeight = height[p];
+      updateHeight(p);
+      int pbalance = getBalance(p);
+      if (pbalance < -1 || pbalance > 1) {
+        rotateToBalance(p);
+        break;
+      }
+      if (height[p] == oldHeight) {
+        break;
+      }
+      p = parent[p];
+    }
+    return n;
+  }
+
+  /* unlink node z from the tree and rebalance. If z has two children its
+   * successor's key is moved into z and the successor's slot is freed. */
+  void removeNode(int z) {
+    if (left[z] != NIL && right[z] != NIL) {
+      int s = right[z];
+      while (left[s] != NIL) {
+        s = left[s];
+      }
+      moveKey(s, z);
+      z = s;
+    }
+    int child = left[z] != NIL ? left[z] : right[z];
+    int p = parent[z];
+    replaceChild(p, z, child);
+    if (child != NIL) {
+      parent[child] = p;
+    }
+    release(z);
+    size--;
+
+    // retrace until a height is unchanged
+    while (p != NIL) {
+      int oldHeight = height[p];
+      updateHeight(p);
+      int pbalance = getBalance(p);
+      if (pbalance < -1 || pbalance > 1) {
+        p = rotateToBalance(p);
+      }
+      if (height[p] == oldHeight) {
+        break;
+      }
+      p = parent[p];
+    }
+  }
+
+  /* take a slot from the free list, or the next unused one, growing the
+   * arrays if the pool is full */
+  private int allocate(int p) {
+    int n;
+    if (free != NIL) {
+      n = free;
+      free = right[n];
+    } else {
+      if (used == left.length) {
+        grow();
+      }
+      n = used++;
+    }
+    left[n] = NIL;
+    right[n] = NIL;
+    parent[n] = p;
+    height[n] = 0;
+    return n;
+  }
+
+  /* return slot n to the free list */
+  private void release(int n) {
+    clearKey(n);
+    right[n] = free;
+    free = n;
+  }
+
+  private void grow() {
+    int capacity = left.length * 2;
+    left = Arrays.copyOf(left, capacity);
+    right = Arrays.copyOf(right, capacity);
+    parent = Arrays.copyOf(parent, capacity);
+    height = Arrays.copyOf(height, capacity);
+    growKeys(capacity);
+  }
+
+  /* make child take old's place under p, or at the root if p is NIL */
+  private void replaceChild(int p, int old, int child) {
+    if (p == NIL) {
+      root = child;
+    } else if (left[p] == old) {
+      left[p] = child;
+    } else {
+      right[p] = child;
+    }
+  }
+
+  private void updateHeight(int n) {
+    height[n] = 1 + Math.max(height(left[n]), height(right[n]));
+  }
+
+  private int getBalance(int n) {
+    return height(right[n]) - height(left[n]);
+  }
+
+  /* rotate on the edge from x to its right child; returns the new subtree
+   * root */
+  private int rotateLeft(int x) {
+    int y = right[x];
+    int b = left[y];
+    right[x] = b;
+    if (b != NIL) {
+      parent[b] = x;
+    }
+    parent[y] = parent[x];
+    replaceChild(parent[x], x, y);
+    left[y] = x;
+    parent[x] = y;
+    updateHeight(x);
+    updateHeight(y);
+    return y;
+  }
+
+  /* rotate on the edge from y to its left child; returns the new subtree
+   * root */
+  private int rotateRight(int y) {
+    int x = left[y];
+    int b = right[x];
+    left[y] = b;
+    if (b != NIL) {
+      parent[b] = y;
+    }
+    parent[x] = parent[y];
+    replaceChild(parent[y], y, x);
+    right[x] = y;
+    parent[y] = x;
+    updateHeight(y);
+    updateHeight(x);
+    return x;
+  }
+
+  /* do the single or double rotation that fixes an AVL violation at n;
+   * returns the new subtree root */
+  private int rotateToBalance(int n) {
+    if (getBalance(n) < 0) {
+      if (getBalance(left[n]) > 0) {
+        rotateLeft(left[n]);
+      }
+      return rotateRight(n);
+    } else {
+      if (getBalance(right[n]) < 0) {
+        rotateRight(right[n]);
+      }
+      return rotateLeft(n);
+    }
+  }
+}
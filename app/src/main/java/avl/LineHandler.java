@@ -0,0 +1,17 @@
+package avl;
+
+import java.nio.ByteBuffer;
+
+/** receives lines as byte slices of a buffer owned by the caller. The bytes
+ * are only valid for the duration of the call. */
+public interface LineHandler {
+
+  /** handle the line stored in buf at positions [off, off + len), without
+   * the line terminator */
+  void line(ByteBuffer buf, int off, int len);
+
+  /** called when every line read so far has been handled and the reader
+   * may block waiting for more input, so that a handler can flush output
+   * without delaying it behind input that has not arrived */
+  default void drained() { }
+}
@@ -0,0 +1,20 @@
+package avl;
+
+import java.io.IOException;
+
+/** a source of undecoded lines, which either pushes each one to a
+ * LineHandler or hands them out one at a time */
+public interface LineReader {
+
+  /** pass every remaining line to handler, in order. Returns the number of
+   * lines read. */
+  long forEachLine(LineHandler handler) throws IOException;
+
+  /** advance to the next line. Returns false once the input is
+   * exhausted. */
+  boolean nextLine() throws IOException;
+
+  /** the current line decoded as UTF-8. Malformed bytes decode to
+   * U+FFFD. */
+  String line();
+}
@@ -0,0 +1,96 @@
+package avl;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/** AVL tree of long keys held in a primitive array, so that no key is
+ * boxed. It has the same operations as GenericAVL. */
+public class LongAVL extends IndexedAVL {
+
+  private long[] key;
+
+  /** constructor: empty tree with a small initial node pool */
+  public LongAVL() {
+    this(INITIAL_CAPACITY);
+  }
+
+  /** constructor: empty tree with room for capacity nodes before growing */
+  public LongAVL(int capacity) {
+    super(capacity);
+    key = new long[left.length];
+  }
+
+  /** the key stored at node n */
+  public long key(int n) {
+    return key[n];
+  }
+
+  /** find k in the tree. return the index of the node containing k or
+   * NIL if not found */
+  public int search(long k) {
+    int n = root;
+    while (n != NIL) {
+      long nk = key[n];
+      if (k == nk) {
+        return n;
+      }
+      n = k < nk ? left[n] : right[n];
+    }
+    return NIL;
+  }
+
+  /** insert k into the tree, maintaining AVL balance */
+  public void avlInsert(long k) {
+    avlInsertIfAbsent(k);
+  }
+
+  /** insert k into the tree if it is not already present, maintaining AVL
+   * balance. Returns true if k was newly inserted. */
+  public boolean avlInsertIfAbsent(long k) {
+    int p = NIL;
+    boolean toLeft = false;
+    int n = root;
+    while (n != NIL) {
+      long nk = key[n];
+      if (k == nk) {
+        return false;
+      }
+      p = n;
+      toLeft = k < nk;
+      n = toLeft ? left[n] : right[n];
+    }
+    n = attach(p, toLeft);
+    key[n] = k;
+    return true;
+  }
+
+  /** remove k from the tree. Returns true if k was present. */
+  public boolean remove(long k) {
+    int z = search(k);
+    if (z == NIL) {
+      return false;
+    }
+    removeNode(z);
+    return true;
+  }
+
+  /** visit every key in the tree in increasing order */
+  public void inOrder(LongConsumer visitor) {
+    int n = first();
+    while (n != NIL) {
+      visitor.accept(key[n]);
+      n = successor(n);
+    }
+  }
+
+  void growKeys(int capacity) {
+    key = Arrays.copyOf(key, capacity);
+  }
+
+  void moveKey(int from, int to) {
+    key[to] = key[from];
+  }
+
+  void clearKey(int n) {
+  }
+}
@@ -0,0 +1,138 @@
+package avl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/** reads the lines of a file by memory-mapping it, a window of at most 1 GB
+ * at a time, and handing out slices of the mapping without copying. Lines
+ * end at '\n', and a '\r' right before it is dropped too. A final line with
+ * no terminator is still reported. */
+public class MappedLineReader implements LineReader {
+
+  /** default size of each mapped window */
+  public static final int DEFAULT_WINDOW = 1 << 30;
+
+  private final FileChannel channel;
+  private final long end;
+  private int window;
+
+  // file position of the current mapping
+  private long windowPos;
+  private MappedByteBuffer buf;
+  private int limit;
+  private boolean lastWindow;
+
+  // start of the next unread line in buf
+  private int next;
+
+  private int lineStart;
+  private int lineLength;
+
+  private byte[] scratch = new byte[256];
+
+  /** constructor: read lines from channel, starting at its beginning. The
+   * caller still owns and closes the channel. */
+  public MappedLineReader(FileChannel channel) throws IOException {
+    this(channel, DEFAULT_WINDOW);
+  }
+
+  /** constructor: read lines from channel, mapping window bytes at a time */
+  public MappedLineReader(FileChannel channel, int window) throws IOException {
+    this(channel, 0, channel.size(), window);
+  }
+
+  /** constructor: read only the lines in the byte range [start, end) of
+   * channel, mapping window bytes at a time. start should be 0 or just after
+   * a '\n' so that the first line is whole. */
+  public MappedLineReader(FileChannel channel, long start, long end, int window) {
+    this.channel = channel;
+    this.windowPos = start;
+    this.end = end;
+    this.window = window;
+  }
+
+  /** advance to the next line. Returns false once the file is exhausted. */
+  public boolean nextLine() throws IOException {
+    while (true) {
+      if (buf != null) {
+        for (int i = next; i < limit; i++) {
+          if (buf.get(i) == '\n') {
+            setLine(next, i);
+            next = i + 1;
+            return true;
+          }
+        }
+        if (lastWindow) {
+          if (next < limit) {
+            setLine(next, limit);
+            next = limit;
+            return true;
+          }
+          return false;
+        }
+        if (next == 0) {
+          // no line ends in this window; map a bigger one
+          if (window == Integer.MAX_VALUE) {
+            throw new IOException("line at offset " + windowPos + " is longer than 2 GB");
+          }
+          window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+        }
+        windowPos += next;
+      } else if (windowPos == end) {
+        return false;
+      }
+      map();
+    }
+  }
+
+  /** the buffer holding the current line */
+  public ByteBuffer buffer() {
+    return buf;
+  }
+
+  /** position of the current line in buffer() */
+  public int lineStart() {
+    return lineStart;
+  }
+
+  /** length in bytes of the current line, without its terminator */
+  public int lineLength() {
+    return lineLength;
+  }
+
+  /** the current line decoded as UTF-8 */
+  public String line() {
+    if (scratch.length < lineLength) {
+      scratch = new byte[Math.max(lineLength, 2 * scratch.length)];
+    }
+    for (int i = 0; i < lineLength; i++) {
+      scratch[i] = buf.get(lineStart + i);
+    }
+    return new String(scratch, 0, lineLength, StandardCharsets.UTF_8);
+  }
+
+  public long forEachLine(LineHandler handler) throws IOException {
+    long lines = 0;
+    while (nextLine()) {
+      handler.line(buf, lineStart, lineLength);
+      lines++;
+    }
+    return lines;
+  }
+
+  private void map() throws IOException {
+    long length = Math.min(window, end - windowPos);
+    buf = channel.map(FileChannel.MapMode.READ_ONLY, windowPos, length);
+    limit = (int) length;
+    lastWindow = windowPos + length == end;
+    next = 0;
+  }
+
+  private void setLine(int start, int end) {
+    lineStart = start;
+    lineLength = end > start && buf.get(end - 1) == '\r' ? end - start - 1 : end - start;
+  }
+}
@@ -0,0 +1,287 @@
+package avl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** counts the unique lines of a file on several threads. The file is split
+ * into byte ranges that start at line boundaries, and parser threads read
+ * those ranges. Each line goes by hash to one of several ByteAVL shards.
+ * Each shard belongs to a single thread, so no tree is ever shared. Equal
+ * lines always hash to the same shard, so the number of unique lines is
+ * the sum of the shard sizes. The same ranges can instead feed per-thread
+ * HyperLogLog sketches for an approximate count. */
+public class ParallelUnique {
+
+  // ranges per parser thread, so that uneven ranges even out
+  private static final int RANGES_PER_THREAD = 4;
+
+  // batches waiting for each shard
+  private static final int QUEUE_CAPACITY = 16;
+
+  // marks the end of a shard's input
+  private static final Batch END = new Batch(0);
+
+  private ParallelUnique() { }
+
+  /** return the number of unique lines in the file read by channel, using
+   * the given number of parser threads and as many shards */
+  public static long count(FileChannel channel, int threads) throws IOException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("need at least one thread, not " + threads);
+    }
+    long[] bounds = split(channel, threads * RANGES_PER_THREAD);
+    ByteAVL[] shards = new ByteAVL[threads];
+    List<BlockingQueue<Batch>> queues = new ArrayList<BlockingQueue<Batch>>();
+    for (int i = 0; i < threads; i++) {
+      shards[i] = new ByteAVL();
+      queues.add(new ArrayBlockingQueue<Batch>(QUEUE_CAPACITY));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(2 * threads);
+    try {
+      List<Future<?>> owners = new ArrayList<Future<?>>();
+      for (int i = 0; i < threads; i++) {
+        ByteAVL shard = shards[i];
+        BlockingQueue<Batch> queue = queues.get(i);
+        owners.add(pool.submit(() -> {
+          try {
+            drain(queue, shard);
+          } catch (RuntimeException | Error exc) {
+            // unblock parsers waiting on this shard's queue
+            pool.shutdownNow();
+            throw exc;
+          }
+          return null;
+        }));
+      }
+
+      AtomicInteger nextRange = new AtomicInteger();
+      List<Future<?>> parsers = new ArrayList<Future<?>>();
+      for (int i = 0; i < threads; i++) {
+        parsers.add(pool.submit(() -> {
+          parse(channel, bounds, nextRange, queues);
+          return null;
+        }));
+      }
+      await(parsers);
+      for (BlockingQueue<Batch> queue : queues) {
+        queue.put(END);
+      }
+      await(owners);
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while counting unique lines", exc);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    long total = 0;
+    for (ByteAVL shard : shards) {
+      total += shard.getSize();
+    }
+    return total;
+  }
+
+  /** return a HyperLogLog sketch of the lines in the file read by channel,
+   * built on the given number of threads. Each thread sketches whole byte
+   * ranges into its own sketch, and the sketches are merged at the end. */
+  public static HyperLogLog sketch(FileChannel channel, int threads,
+      int precision) throws IOException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("need at least one thread, not " + threads);
+    }
+    long[] bounds = split(channel, threads * RANGES_PER_THREAD);
+    AtomicInteger nextRange = new AtomicInteger();
+    HyperLogLog[] sketches = new HyperLogLog[threads];
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> tasks = new ArrayList<Future<?>>();
+      for (int i = 0; i < threads; i++) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        sketches[i] = sketch;
+        tasks.add(pool.submit(() -> {
+          int r;
+          while ((r = nextRange.getAndIncrement()) < bounds.length - 1) {
+            new MappedLineReader(channel, bounds[r], bounds[r + 1],
+                MappedLineReader.DEFAULT_WINDOW).forEachLine(sketch);
+          }
+          return null;
+        }));
+      }
+      await(tasks);
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while sketching lines", exc);
+    } finally {
+      pool.shutdownNow();
+    }
+    for (int i = 1; i < threads; i++) {
+      sketches[0].merge(sketches[i]);
+    }
+    return sketches[0];
+  }
+
+  /** the shard, out of n, that the line buf[off, off + len) belongs to */
+  static int shardOf(ByteBuffer buf, int off, int len, int n) {
+    // FNV-1a, then a multiplicative mix so the high bits pick the shard
+    int h = 0x811c9dc5;
+    for (int i = 0; i < len; i++) {
+      h = (h ^ (buf.get(off + i) & 0xff)) * 0x01000193;
+    }
+    h *= 0x9e3779b9;
+    return (int) (((h >>> 1) * (long) n) >>> 31);
+  }
+
+  /* split the channel into at most parts byte ranges, each starting at the
+   * beginning of the file or just after a '\n'. Returns the boundaries. */
+  static long[] split(FileChannel channel, int parts) throws IOException {
+    long size = channel.size();
+    ArrayList<Long> bounds = new ArrayList<Long>();
+    bounds.add(0L);
+    ByteBuffer b = ByteBuffer.allocate(1 << 12);
+    for (int i = 1; i < parts; i++) {
+      long pos = Math.max(size / parts * i, bounds.get(bounds.size() - 1));
+      // move pos forward to just after the next '\n' at or after pos - 1
+      long at = Math.max(pos - 1, 0);
+      boolean found = false;
+      while (!found && at < size) {
+        b.clear();
+        int read = channel.read(b, at);
+        if (read <= 0) {
+          break;
+        }
+        for (int j = 0; j < read; j++) {
+          if (b.get(j) == '\n') {
+            at += j + 1;
+            found = true;
+            break;
+          }
+        }
+        if (!found) {
+          at += read;
+        }
+      }
+      if (!found || at >= size) {
+        break;
+      }
+      if (at > bounds.get(bounds.size() - 1)) {
+        bounds.add(at);
+      }
+    }
+    bounds.add(size);
+    long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  /* parse ranges until none are left, sending each line to its shard */
+  private static void parse(FileChannel channel, long[] bounds,
+      AtomicInteger nextRange, List<BlockingQueue<Batch>> queues)
+      throws IOException, InterruptedException {
+    int n = queues.size();
+    Batch[] pending = new Batch[n];
+    for (int i = 0; i < n; i++) {
+      pending[i] = new Batch(Batch.DEFAULT_CAPACITY);
+    }
+    int r;
+    while ((r = nextRange.getAndIncrement()) < bounds.length - 1) {
+      MappedLineReader reader = new MappedLineReader(channel, bounds[r],
+          bounds[r + 1], MappedLineReader.DEFAULT_WINDOW);
+      while (reader.nextLine()) {
+        ByteBuffer buf = reader.buffer();
+        int off = reader.lineStart();
+        int len = reader.lineLength();
+        int s = shardOf(buf, off, len, n);
+        if (!pending[s].fits(len)) {
+          queues.get(s).put(pending[s]);
+          pending[s] = new Batch(Math.max(Batch.DEFAULT_CAPACITY, len));
+        }
+        pending[s].add(buf, off, len);
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      if (pending[i].count > 0) {
+        queues.get(i).put(pending[i]);
+      }
+    }
+  }
+
+  /* insert every line arriving on queue into shard until END arrives */
+  private static void drain(BlockingQueue<Batch> queue, ByteAVL shard)
+      throws InterruptedException {
+    while (true) {
+      Batch batch = queue.take();
+      if (batch == END) {
+        return;
+      }
+      ByteBuffer view = ByteBuffer.wrap(batch.data);
+      int start = 0;
+      for (int i = 0; i < batch.count; i++) {
+        shard.insertIfAbsent(view, start, batch.ends[i] - start);
+        start = batch.ends[i];
+      }
+    }
+  }
+
+  /* wait for every task, rethrowing the first failure */
+  private static void await(List<Future<?>> tasks)
+      throws IOException, InterruptedException {
+    for (Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (ExecutionException exc) {
+        Throwable cause = exc.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  /** lines copied out of the input, packed back to back */
+  private static class Batch {
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    final byte[] data;
+    int[] ends = new int[256];
+    int count;
+    int used;
+
+    Batch(int capacity) {
+      data = new byte[capacity];
+    }
+
+    boolean fits(int len) {
+      return data.length - used >= len;
+    }
+
+    void add(ByteBuffer buf, int off, int len) {
+      for (int i = 0; i < len; i++) {
+        data[used + i] = buf.get(off + i);
+      }
+      used += len;
+      if (count == ends.length) {
+        ends = Arrays.copyOf(ends, 2 * count);
+      }
+      ends[count++] = used;
+    }
+  }
+}
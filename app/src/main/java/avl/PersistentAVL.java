@@ -0,0 +1,338 @@
+package avl;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** AVL tree of Strings whose nodes never change once built. An insertion
+ * or removal copies only the nodes on the path to the changed key, plus
+ * the few that a rebalancing rotation moves, and shares every other node
+ * with the previous version. The new root is then published through an
+ * AtomicReference.
+ *
+ * A Snapshot holds one root, so it is a consistent view that later writes
+ * never disturb. Any number of threads can read or iterate a snapshot with
+ * no locks while writers carry on. Writers do not lock either: each builds
+ * its new version from the current root and retries if another writer
+ * published first. An old version costs only the nodes no newer version
+ * shares, about its height's worth per write, and is collected once no
+ * snapshot holds it. Heights follow AVL: a leaf is 0 and an empty subtree
+ * is -1. */
+public class PersistentAVL implements Iterable<String> {
+
+  private final AtomicReference<Node> root = new AtomicReference<Node>();
+
+  /** the tree as it is now. Later writes do not change it. */
+  public Snapshot snapshot() {
+    return new Snapshot(root.get());
+  }
+
+  public int getSize() {
+    return size(root.get());
+  }
+
+  public int getHeight() {
+    return height(root.get());
+  }
+
+  /** return true if w is in the tree */
+  public boolean contains(String w) {
+    return snapshot().contains(w);
+  }
+
+  /** iterate over a snapshot of the words taken now, in increasing order */
+  public Iterator<String> iterator() {
+    return snapshot().iterator();
+  }
+
+  /** insert w into the tree if it is not already present. Returns true if
+   * w was newly inserted. */
+  public boolean avlInsertIfAbsent(String w) {
+    while (true) {
+      Node old = root.get();
+      Node updated = insert(old, w);
+      if (updated == old) {
+        return false;
+      }
+      if (root.compareAndSet(old, updated)) {
+        return true;
+      }
+    }
+  }
+
+  /** remove w from the tree if it is present. Returns true if it was. */
+  public boolean remove(String w) {
+    while (true) {
+      Node old = root.get();
+      Node updated = remove(old, w);
+      if (updated == old) {
+        return false;
+      }
+      if (root.compareAndSet(old, updated)) {
+        return true;
+      }
+    }
+  }
+
+  /** one version of the tree. It never changes, so it can be shared
+   * between threads freely. */
+  public static final class Snapshot implements Iterable<String> {
+
+    // null for an empty tree
+    final Node root;
+
+    Snapshot(Node root) {
+      this.root = root;
+    }
+
+    public int getSize() {
+      return size(root);
+    }
+
+    public int getHeight() {
+      return height(root);
+    }
+
+    /** return true if w is in this version */
+    public boolean contains(String w) {
+      Node n = root;
+      while (n != null) {
+        int c = w.compareTo(n.word);
+        if (c == 0) {
+          return true;
+        }
+        n = c < 0 ? n.left : n.right;
+      }
+      return false;
+    }
+
+    /** the smallest word, or null if this version is empty */
+    public String first() {
+      Node n = root;
+      if (n == null) {
+        return null;
+      }
+      while (n.left != null) {
+        n = n.left;
+      }
+      return n.word;
+    }
+
+    /** the largest word, or null if this version is empty */
+    public String last() {
+      Node n = root;
+      if (n == null) {
+        return null;
+      }
+      while (n.right != null) {
+        n = n.right;
+      }
+      return n.word;
+    }
+
+    /** the smallest word that is at least w, or null if none */
+    public String ceiling(String w) {
+      String best = null;
+      Node n = root;
+      while (n != null) {
+        int c = w.compareTo(n.word);
+        if (c == 0) {
+          return n.word;
+        } else if (c < 0) {
+          best = n.word;
+          n = n.left;
+        } else {
+          n = n.right;
+        }
+      }
+      return best;
+    }
+
+    /** the largest word that is at most w, or null if none */
+    public String floor(String w) {
+      String best = null;
+      Node n = root;
+      while (n != null) {
+        int c = w.compareTo(n.word);
+        if (c == 0) {
+          return n.word;
+        } else if (c > 0) {
+          best = n.word;
+          n = n.right;
+        } else {
+          n = n.left;
+        }
+      }
+      return best;
+    }
+
+    /** the number of words less than w */
+    public int rank(String w) {
+      int r = 0;
+      Node n = root;
+      while (n != null) {
+        int c = w.compareTo(n.word);
+        if (c <= 0) {
+          n = n.left;
+        } else {
+          r += size(n.left) + 1;
+          n = n.right;
+        }
+      }
+      return r;
+    }
+
+    /** the word of rank i, counting from 0 */
+    public String select(int i) {
+      if (i < 0 || i >= size(root)) {
+        throw new IndexOutOfBoundsException("rank " + i + " of " + size(root));
+      }
+      Node n = root;
+      while (true) {
+        int l = size(n.left);
+        if (i == l) {
+          return n.word;
+        } else if (i < l) {
+          n = n.left;
+        } else {
+          i -= l + 1;
+          n = n.right;
+        }
+      }
+    }
+
+    /** iterate over the words of this version in increasing order. The
+     * nodes have no parent pointers, so the iterator keeps the path of
+     * ancestors still to visit. */
+    public Iterator<String> iterator() {
+      return new Iterator<String>() {
+        // an AVL tree of height h has no path longer than h + 1 nodes
+        private final Node[] stack = new Node[height(root) + 1];
+        private int depth;
+
+        {
+          pushLeft(root);
+        }
+
+        private void pushLeft(Node n) {
+          while (n != null) {
+            stack[depth++] = n;
+            n = n.left;
+          }
+        }
+
+        public boolean hasNext() {
+          return depth > 0;
+        }
+
+        public String next() {
+          if (depth == 0) {
+            throw new NoSuchElementException();
+          }
+          Node n = stack[--depth];
+          pushLeft(n.right);
+          return n.word;
+        }
+      };
+    }
+  }
+
+  /* the subtree n with w added, or n itself if w is already there */
+  private static Node insert(Node n, String w) {
+    if (n == null) {
+      return new Node(null, w, null);
+    }
+    int c = w.compareTo(n.word);
+    if (c == 0) {
+      return n;
+    } else if (c < 0) {
+      Node l = insert(n.left, w);
+      return l == n.left ? n : balance(l, n.word, n.right);
+    } else {
+      Node r = insert(n.right, w);
+      return r == n.right ? n : balance(n.left, n.word, r);
+    }
+  }
+
+  /* the subtree n without w, or n itself if w is not there */
+  private static Node remove(Node n, String w) {
+    if (n == null) {
+      return null;
+    }
+    int c = w.compareTo(n.word);
+    if (c < 0) {
+      Node l = remove(n.left, w);
+      return l == n.left ? n : balance(l, n.word, n.right);
+    } else if (c > 0) {
+      Node r = remove(n.right, w);
+      return r == n.right ? n : balance(n.left, n.word, r);
+    } else if (n.left == null) {
+      return n.right;
+    } else if (n.right == null) {
+      return n.left;
+    }
+    // replace n's word with its successor's
+    Node s = n.right;
+    while (s.left != null) {
+      s = s.left;
+    }
+    return balance(n.left, s.word, removeFirst(n.right));
+  }
+
+  /* the non-empty subtree n without its smallest word */
+  private static Node removeFirst(Node n) {
+    if (n.left == null) {
+      return n.right;
+    }
+    return balance(removeFirst(n.left), n.word, n.right);
+  }
+
+  /* a new node holding w over l and r, whose heights differ by at most
+   * two, rotated if needed so that they differ by at most one. Rotations
+   * build new nodes rather than moving the old ones. */
+  private static Node balance(Node l, String w, Node r) {
+    int hl = height(l);
+    int hr = height(r);
+    if (hl > hr + 1) {
+      if (height(l.left) >= height(l.right)) {
+        return new Node(l.left, l.word, new Node(l.right, w, r));
+      }
+      Node lr = l.right;
+      return new Node(new Node(l.left, l.word, lr.left), lr.word,
+                      new Node(lr.right, w, r));
+    } else if (hr > hl + 1) {
+      if (height(r.right) >= height(r.left)) {
+        return new Node(new Node(l, w, r.left), r.word, r.right);
+      }
+      Node rl = r.left;
+      return new Node(new Node(l, w, rl.left), rl.word,
+                      new Node(rl.right, r.word, r.right));
+    }
+    return new Node(l, w, r);
+  }
+
+  static int height(Node n) {
+    return n != null ? n.height : -1;
+  }
+
+  static int size(Node n) {
+    return n != null ? n.size : 0;
+  }
+
+  /** an immutable tree node, with the height and size of its subtree */
+  static final class Node {
+    final Node left;
+    final String word;
+    final Node right;
+    final int height;
+    final int size;
+
+    Node(Node left, String word, Node right) {
+      this.left = left;
+      this.word = word;
+      this.right = right;
+      height = 1 + Math.max(height(left), height(right));
+      size = 1 + size(left) + size(right);
+    }
+  }
+}
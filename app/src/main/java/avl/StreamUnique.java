@@ -0,0 +1,110 @@
+package avl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** filters a stream down to the first occurrence of each line, in the
+ * order they arrive, like awk '!seen[$0]++'. Lines are kept undecoded in a
+ * ByteAVL and written out byte for byte. Output is flushed whenever the
+ * input runs dry, so a line is never held back waiting for later input.
+ * A running count of distinct lines can be reported every so many lines or
+ * seconds. */
+public class StreamUnique implements LineHandler {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ByteAVL seen = new ByteAVL();
+  private final OutputStream out;
+  private final PrintStream progress;
+  private final long everyLines;
+
+  // read by the reporting thread
+  private volatile long lines;
+  private volatile int distinct;
+
+  // lines read at the last report
+  private volatile long reported;
+
+  private StreamUnique(OutputStream out, PrintStream progress, long everyLines) {
+    this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+    this.progress = progress;
+    this.everyLines = everyLines;
+  }
+
+  /** copy the first occurrence of each line of in to out, and return the
+   * number of distinct lines. If everyLines or everySeconds is positive,
+   * the count so far is printed to progress that often, and once more at
+   * the end. */
+  public static int filter(InputStream in, OutputStream out, PrintStream progress,
+      long everyLines, long everySeconds) throws IOException {
+    StreamUnique s = new StreamUnique(out, progress, everyLines);
+    ScheduledExecutorService timer = null;
+    if (everySeconds > 0) {
+      timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "unique-progress");
+        t.setDaemon(true);
+        return t;
+      });
+      timer.scheduleAtFixedRate(s::report, everySeconds, everySeconds,
+          TimeUnit.SECONDS);
+    }
+    try {
+      new ByteLineReader(in).forEachLine(s);
+      s.out.flush();
+    } catch (UncheckedIOException exc) {
+      throw exc.getCause();
+    } finally {
+      if (timer != null) {
+        timer.shutdownNow();
+      }
+    }
+    if ((everyLines > 0 || everySeconds > 0) && s.reported != s.lines) {
+      s.report();
+    }
+    return s.distinct;
+  }
+
+  public void line(ByteBuffer buf, int off, int len) {
+    long n = lines + 1;
+    lines = n;
+    if (seen.insertIfAbsent(buf, off, len)) {
+      distinct = seen.getSize();
+      try {
+        if (buf.hasArray()) {
+          out.write(buf.array(), buf.arrayOffset() + off, len);
+        } else {
+          for (int i = 0; i < len; i++) {
+            out.write(buf.get(off + i));
+          }
+        }
+        out.write('\n');
+      } catch (IOException exc) {
+        throw new UncheckedIOException(exc);
+      }
+    }
+    if (everyLines > 0 && n % everyLines == 0) {
+      report();
+    }
+  }
+
+  public void drained() {
+    try {
+      out.flush();
+    } catch (IOException exc) {
+      throw new UncheckedIOException(exc);
+    }
+  }
+
+  private void report() {
+    reported = lines;
+    progress.println("distinct: " + distinct + " of " + lines + " lines");
+  }
+}
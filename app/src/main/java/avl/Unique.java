@@ -1,41 +1,322 @@
 package avl;
 
-import java.util.Scanner;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 public class Unique {
 
-    /** Main program: prints the number of unique lines in a given file by one
-     * of two methods */
+    // lines listed by the top mode unless a count is given
+    private static final int DEFAULT_TOP = 10;
+
+    // false positive rate the Bloom filter is sized for
+    static final double BLOOM_FPP = 0.01;
+
+    // bytes of input per expected unique line, when no count is given
+    private static final long BYTES_PER_LINE = 8;
+
+    // memory for lines in the external mode unless a budget is given
+    private static final long DEFAULT_BUDGET_MB = 256;
+
+    /** Main program: prints the number of unique lines in a given file, and
+     * how long counting took, using the UniqueEngine named by the first
+     * argument; "auto" picks one by the size of the file. An optional third
+     * argument "mmap" reads the file through a memory mapping instead of a
+     * stream. For the avl engine only, a final argument "stats" prints the
+     * AVL tree's comparison, rotation and path length counters after the
+     * count, and "bloom" or "bloom=N" puts a Bloom filter sized for N
+     * unique lines in front of the AVL tree. Mode "top"
+     * lists the most repeated lines, ten unless a count follows the
+     * filename. Mode "hll" estimates the count with a HyperLogLog sketch of
+     * the precision that follows the filename, or 14 if none does. Mode
+     * "external" keeps only as many MB of lines in memory as follow the
+     * filename, 256 by default, spilling sorted runs to disk; "out=FILE"
+     * writes its sorted unique lines to FILE. Mode "stream" takes no file:
+     * it copies the first occurrence of each line of standard input to
+     * standard output, and if followed by N or Ns reports the distinct
+     * count on standard error every N lines or N seconds. */
     public static void main(String[] args) {
-        if (args.length != 2) {
-          System.out.println("Requires 2 arguments: naive or avl and a filename.");
+        if ((args.length == 1 || args.length == 2) && args[0].equals("stream")) {
+          streamUnique(args.length == 2 ? args[1] : null);
+          return;
+        }
+        boolean stats = false;
+        // unique lines to size the Bloom filter for, 0 for no filter and -1
+        // to guess from the file size
+        long bloom = 0;
+        // file to write the sorted unique lines to, for external
+        String out = null;
+        while (args.length > 2) {
+          String flag = args[args.length - 1];
+          if (flag.startsWith("out=")) {
+            out = flag.substring("out=".length());
+          } else if (flag.equals("stats")) {
+            stats = true;
+          } else if (flag.equals("bloom")) {
+            bloom = -1;
+          } else if (flag.startsWith("bloom=")) {
+            try {
+              bloom = Long.parseLong(flag.substring("bloom=".length()));
+            } catch (NumberFormatException exc) {
+              bloom = 0;
+            }
+            if (bloom < 1) {
+              System.out.println("Bloom filter size must be a positive number, not "
+                  + flag.substring("bloom=".length()));
+              return;
+            }
+          } else {
+            break;
+          }
+          args = Arrays.copyOf(args, args.length - 1);
+        }
+        if (stats) {
+          // AVLStats reads this once, so set it before any tree is built
+          System.setProperty("avl.stats", "true");
+        }
+        // the engine named, with default settings, or null for other modes
+        UniqueEngine named = args.length >= 2 ? UniqueEngines.named(args[0]) : null;
+        boolean parallel = named instanceof UniqueEngines.Parallel;
+        boolean avl = named instanceof UniqueEngines.Avl;
+        boolean top = args.length >= 2 && args[0].equals("top");
+        boolean hll = args.length >= 2 && args[0].equals("hll");
+        boolean external = args.length >= 2 && args[0].equals("external");
+        if (args.length != 2
+            && !(args.length == 3
+                 && (parallel || top || hll || external || args[2].equals("mmap")))
+            || !(top || hll || external || UniqueEngines.NAMES.contains(args[0]))) {
+          System.out.println("Requires 2 arguments: an engine (" + String.join(", ", UniqueEngines.NAMES)
+              + "),");
+          System.out.println("top, hll or external, and a filename, optionally followed by mmap, by a");
+          System.out.println("thread count for parallel, by the number of lines to list for top, by");
+          System.out.println("the precision for hll or by the memory budget in MB for external, then");
+          System.out.println("for avl by stats to print AVL counters or bloom[=N] to use a Bloom");
+          System.out.println("filter, or for external by out=FILE to write the sorted unique lines.");
+          System.out.println("Or: stream, optionally followed by N or Ns to report the count every");
+          System.out.println("N lines or N seconds, to filter standard input.");
+          return;
+        }
+        if ((stats || bloom != 0) && !avl) {
+          System.out.println("stats and bloom only apply to the avl engine");
+          return;
+        }
+        if (out != null && !external) {
+          System.out.println("out=FILE only applies to external");
           return;
         }
         try {
             File f = new File(args[1]);
-            Scanner sc = new Scanner(f);
+            if (bloom < 0) {
+              bloom = Math.max(1024, f.length() / BYTES_PER_LINE);
+            }
+            if (hll) {
+              int precision = args.length == 3 ? Integer.parseInt(args[2])
+                  : HyperLogLog.DEFAULT_PRECISION;
+              if (precision < HyperLogLog.MIN_PRECISION
+                  || precision > HyperLogLog.MAX_PRECISION) {
+                throw new NumberFormatException();
+              }
+              try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                System.out.println("Finding unique lines in " + args[1]);
+                HyperLogLog sketch = ParallelUnique.sketch(ch,
+                    Runtime.getRuntime().availableProcessors(), precision);
+                System.out.println(String.format(
+                    "HyperLogLog (precision %d, %d bytes, standard error %.2f%%):",
+                    precision, sketch.sizeInBytes(), 100 * sketch.standardError()));
+                System.out.println(sketch.estimate());
+              }
+              return;
+            }
+            if (external) {
+              long budget = args.length == 3 ? Long.parseLong(args[2])
+                  : DEFAULT_BUDGET_MB;
+              if (budget < 1) {
+                throw new NumberFormatException();
+              }
+              System.out.println("Finding unique lines in " + args[1]);
+              System.out.println("External (" + budget + " MB):");
+              System.out.println(externalUnique(f.toPath(), budget << 20, out));
+              return;
+            }
+            if (top) {
+              int k = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_TOP;
+              if (k < 0) {
+                throw new NumberFormatException();
+              }
+              System.out.println("Finding unique lines in " + args[1]);
+              printTop(f.toPath(), k);
+              return;
+            }
+            UniqueEngine engine = named;
+            if (parallel && args.length == 3 && !args[2].equals("mmap")) {
+              int threads = Integer.parseInt(args[2]);
+              if (threads < 1) {
+                throw new NumberFormatException();
+              }
+              engine = new UniqueEngines.Parallel(threads);
+            } else if (avl) {
+              engine = new UniqueEngines.Avl(bloom, stats);
+            } else if (args[0].equals(UniqueEngines.AUTO)) {
+              engine = UniqueEngines.auto(f.length());
+            }
             System.out.println("Finding unique lines in " + args[1]);
-            if (args[0].equals("naive")) {
-              System.out.println("Naive:");
-              System.out.println(naiveUnique(sc));
-            } else {
-              System.out.println(args[1]);
-              System.out.println("AVL:");
-              System.out.println(avlUnique(sc));
-            }
-        } catch (FileNotFoundException exc) {
+            printCount(engine, f.toPath(), args.length == 3 && args[2].equals("mmap"));
+        } catch (NumberFormatException exc) {
+            String rule = parallel ? "Thread count must be a positive number"
+                : top ? "Number of lines must be a non-negative number"
+                : external ? "Memory budget must be a positive number of MB"
+                : "Precision must be a number from " + HyperLogLog.MIN_PRECISION
+                    + " to " + HyperLogLog.MAX_PRECISION;
+            System.out.println(rule + ", not " + args[2]);
+        } catch (FileNotFoundException | NoSuchFileException exc) {
             System.out.println("Could not find file " + args[1]);
+        } catch (IOException exc) {
+            System.out.println("Could not read file " + args[1] + ": " + exc.getMessage());
+        }
+    }
+
+    /** count the unique lines of file with engine and print the count and
+     * how long it took, in the same form for every engine, then anything
+     * else the engine reports */
+    static void printCount(UniqueEngine engine, Path file, boolean mapped)
+            throws IOException {
+        long start = System.nanoTime();
+        long count = engine.count(file, mapped);
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(String.format("%s: %d unique lines in %d ms",
+                                         engine.label(), count, millis));
+        String details = engine.details();
+        if (details != null) {
+            System.out.println(details);
         }
     }
 
-    /** Return the number of unique lines available to be read by sc */
-    private static int naiveUnique(Scanner sc) {
+    /** copy the first occurrence of each line of standard input to standard
+     * output. every is null, a number of lines or a number of seconds
+     * followed by "s", and sets how often the distinct count is reported on
+     * standard error. */
+    private static void streamUnique(String every) {
+        long lines = 0;
+        long seconds = 0;
+        try {
+          if (every != null && every.endsWith("s")) {
+            seconds = Long.parseLong(every.substring(0, every.length() - 1));
+          } else if (every != null) {
+            lines = Long.parseLong(every);
+          }
+        } catch (NumberFormatException exc) {
+          lines = -1;
+        }
+        if (every != null && lines < 1 && seconds < 1) {
+          System.out.println("Report interval must be a positive number of lines,");
+          System.out.println("or of seconds followed by s, not " + every);
+          return;
+        }
+        try {
+          StreamUnique.filter(System.in, System.out, System.err, lines, seconds);
+        } catch (IOException exc) {
+          System.err.println("Could not copy standard input: " + exc.getMessage());
+        }
+    }
+
+    /** Return the number of unique lines of file, read the same way as by
+     * the engines, holding about budget bytes of them in memory and the
+     * rest in sorted run files in the temporary directory. If out is not
+     * null the unique lines are written to it in sorted order. */
+    static long externalUnique(Path file, long budget, String out)
+            throws IOException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"));
+        try (InputStream in = Files.newInputStream(file)) {
+            Iterator<String> lines = lines(new ByteLineReader(in));
+            if (out == null) {
+                return ExternalUnique.count(lines, budget, dir, null);
+            }
+            try (BufferedWriter w = Files.newBufferedWriter(Paths.get(out),
+                                                            StandardCharsets.UTF_8)) {
+                return ExternalUnique.count(lines, budget, dir, line -> {
+                    try {
+                        w.write(line);
+                        w.newLine();
+                    } catch (IOException exc) {
+                        throw new UncheckedIOException(exc);
+                    }
+                });
+            }
+        } catch (UncheckedIOException exc) {
+            throw exc.getCause();
+        }
+    }
+
+    /** print the total and unique line counts of file, read the same way
+     * as by the engines, then the k most repeated lines, each after its
+     * count. Returns the unique count. */
+    static long printTop(Path file, int k) throws IOException {
+        AVL seen = new AVL(true);
+        long total = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            Iterator<String> lines = lines(new ByteLineReader(in));
+            while (lines.hasNext()) {
+                seen.avlInsertIfAbsent(lines.next());
+                total++;
+            }
+        } catch (UncheckedIOException exc) {
+            throw exc.getCause();
+        }
+        System.out.println("Top " + k + ":");
+        System.out.println("total: " + total);
+        System.out.println("unique: " + seen.getSize());
+        for (AVL.CountedNode n : seen.mostFrequent(k)) {
+            System.out.println(String.format("%8d %s", n.count, n.word));
+        }
+        return seen.getSize();
+    }
+
+    /** the lines of r decoded as UTF-8, one at a time */
+    static Iterator<String> lines(LineReader r) {
+        return new Iterator<String>() {
+            private Boolean ready;
+
+            public boolean hasNext() {
+                if (ready == null) {
+                    try {
+                        ready = r.nextLine();
+                    } catch (IOException exc) {
+                        throw new UncheckedIOException(exc);
+                    }
+                }
+                return ready;
+            }
+
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = null;
+                return r.line();
+            }
+        };
+    }
+
+    /** Return the number of unique lines available to be read from lines */
+    static int naiveUnique(Iterator<String> lines) {
       // unique lines seen so far
       ArrayList<String> seen = new ArrayList<String>();
-      while (sc.hasNextLine()) {
-        String line = sc.nextLine();
+      while (lines.hasNext()) {
+        String line = lines.next();
 
         // check if we've seen it:
         int i = 0;
@@ -49,24 +330,165 @@ public class Unique {
       return seen.size();
     }
 
-    /** Return the number of unique lines available to be read by sc */
-    private static int avlUnique(Scanner sc) {
-        //Unique lines seen so far
-        AVL seen = new AVL();
+    /** Return the number of unique lines available to be read from lines */
+    static int avlUnique(Iterator<String> lines) {
+        return avlUnique(lines, new AVL());
+    }
+
+    /** Return the number of unique lines available to be read from lines,
+     * adding them to seen */
+    static int avlUnique(Iterator<String> lines, AVL seen) {
         int uniqueLines = 0;
 
-        while (sc.hasNextLine()) {
-            String line = sc.nextLine();
-            AVL.Node n = seen.search(line);
+        while (lines.hasNext()) {
+            String line = lines.next();
 
-            // check if it's in the tree
-            if (n == null){
-                seen.avlInsert(line);
+            // insert it unless it's already in the tree
+            if (seen.avlInsertIfAbsent(line)) {
                 uniqueLines++;
             }
         }
         return uniqueLines;
     }
 
+    /** Return the number of unique lines available to be read from lines,
+     * adding them to seen. A line that filter has definitely not seen is
+     * new, so it is only buffered; the buffer is sorted and merged into
+     * the tree in one pass when it is needed. Any other line is looked for
+     * in the tree, and only if it is not there is the buffer merged so the
+     * line can be inserted or found among the buffered ones. Lines new to
+     * the filter then never descend the tree. counts records how often
+     * each happened. */
+    static int avlUnique(Iterator<String> lines, AVL seen, BloomFilter filter,
+                         FilterCounts counts) {
+        int uniqueLines = 0;
+        // definitely new lines not yet in seen; all distinct
+        ArrayList<String> pending = new ArrayList<String>();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            counts.lines++;
+            if (filter.addIfAbsent(line)) {
+                counts.definitelyNew++;
+                pending.add(line);
+                uniqueLines++;
+                continue;
+            }
+            counts.lookups++;
+            if (seen.search(line) != null) {
+                continue;
+            }
+            if (!pending.isEmpty()) {
+                merge(seen, pending);
+                counts.merges++;
+            }
+            if (seen.avlInsertIfAbsent(line)) {
+                // the filter said maybe, but the line was new
+                counts.falsePositives++;
+                uniqueLines++;
+            }
+        }
+        if (!pending.isEmpty()) {
+            merge(seen, pending);
+            counts.merges++;
+        }
+        return uniqueLines;
+    }
+
+    /* sort the distinct lines of pending, none of them in seen, add them to
+     * seen in one union and empty pending */
+    private static void merge(AVL seen, ArrayList<String> pending) {
+        Collections.sort(pending);
+        seen.addAll(AVL.fromSorted(pending.iterator(), pending.size()));
+        pending.clear();
+    }
+
+    /** how a Bloom filter in front of the AVL tree fared */
+    static class FilterCounts {
+        long lines;
+        long definitelyNew;
+        long falsePositives;
+        // lines the filter might have seen, and so were looked up
+        long lookups;
+        // times the buffered new lines were merged into the tree
+        long merges;
+
+        /** fraction of new lines that the filter wrongly said it might
+         * have seen */
+        double falsePositiveRate() {
+            long negatives = definitelyNew + falsePositives;
+            return negatives == 0 ? 0 : (double) falsePositives / negatives;
+        }
+
+        String summary(BloomFilter filter) {
+            return String.format("Bloom filter (%d bits, %d hashes): %d of %d lines"
+                + " definitely new, merged into the tree in %d batches; %d"
+                + " looked up in the tree, %d of them new (false positive"
+                + " rate %.2f%%, sized for %.2f%%)",
+                filter.numBits(), filter.numHashes(), definitelyNew, lines,
+                merges, lookups, falsePositives, 100 * falsePositiveRate(),
+                100 * filter.targetFpp());
+        }
+    }
+
+    /** Return the number of unique lines available to be read from lines,
+     * using the array-backed AVL tree */
+    static int arrayAvlUnique(Iterator<String> lines) {
+        ArrayAVL seen = new ArrayAVL();
+        while (lines.hasNext()) {
+            seen.avlInsertIfAbsent(lines.next());
+        }
+        return seen.getSize();
+    }
 
+    /** Return the number of unique lines available to be read from r,
+     * comparing lines as raw bytes without decoding them */
+    static int byteAvlUnique(LineReader r) throws IOException {
+        ByteAVL seen = new ByteAVL();
+        r.forEachLine(seen::insertIfAbsent);
+        return seen.getSize();
+    }
+
+    /** Return the number of unique lines available to be read from r,
+     * keeping them undecoded in an open-addressing hash set */
+    static int hashUnique(LineReader r) throws IOException {
+        ByteHashSet seen = new ByteHashSet();
+        r.forEachLine(seen::insertIfAbsent);
+        return seen.getSize();
+    }
+
+    /** Return the number of unique lines available to be read from r, by
+     * copying them all out, sorting them with Arrays.parallelSort and
+     * counting the runs of equal lines */
+    static int sortUnique(LineReader r) throws IOException {
+        ArrayList<byte[]> all = new ArrayList<byte[]>();
+        r.forEachLine((buf, off, len) -> {
+            byte[] line = new byte[len];
+            for (int i = 0; i < len; i++) {
+                line[i] = buf.get(off + i);
+            }
+            all.add(line);
+        });
+        byte[][] lines = all.toArray(new byte[all.size()][]);
+        all.clear();
+        Arrays.parallelSort(lines, Unique::compareBytes);
+        int uniqueLines = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (i == 0 || compareBytes(lines[i - 1], lines[i]) != 0) {
+                uniqueLines++;
+            }
+        }
+        return uniqueLines;
+    }
+
+    /** unsigned lexicographic comparison of a and b, the order ByteAVL
+     * keeps its keys in */
+    static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xff) - (b[i] & 0xff);
+            }
+        }
+        return a.length - b.length;
+    }
 }
@@ -0,0 +1,27 @@
+package avl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/** a way of counting the unique lines of a file. Engines are picked by
+ * name on the command line, and all report their count and running time
+ * the same way, so they can be compared on the same input. */
+public interface UniqueEngine {
+
+  /** the name that selects this engine */
+  String name();
+
+  /** the heading the count is reported under */
+  String label();
+
+  /** return the number of unique lines in file. If mapped is set, an
+   * engine that reads the file sequentially does so through a memory
+   * mapping instead of a stream. */
+  long count(Path file, boolean mapped) throws IOException;
+
+  /** anything more the engine has to say about its last count, printed
+   * after the count, or null */
+  default String details() {
+    return null;
+  }
+}
@@ -0,0 +1,257 @@
+package avl;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/** the UniqueEngines Unique can run, and how auto chooses between them */
+public final class UniqueEngines {
+
+  /** the name of the engine that picks another by input size */
+  public static final String AUTO = "auto";
+
+  /** every engine name, in the order they are listed to the user */
+  public static final List<String> NAMES;
+
+  // inputs smaller than this are counted on one thread
+  static final long PARALLEL_BYTES = 64L << 20;
+
+  static {
+    List<String> names = new ArrayList<String>();
+    for (UniqueEngine e : defaults()) {
+      names.add(e.name());
+    }
+    names.add(AUTO);
+    NAMES = Collections.unmodifiableList(names);
+  }
+
+  private UniqueEngines() { }
+
+  /* one of every engine but auto, with default settings */
+  private static List<UniqueEngine> defaults() {
+    return Arrays.<UniqueEngine>asList(new Naive(), new Avl(0, false),
+        new Array(), new Bytes(), new Hash(), new Sort(),
+        new Parallel(Runtime.getRuntime().availableProcessors()));
+  }
+
+  /** the engine called name, with default settings, or null if there is
+   * none. auto is not included, as it depends on the input. */
+  public static UniqueEngine named(String name) {
+    for (UniqueEngine e : defaults()) {
+      if (e.name().equals(name)) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  /** the engine auto picks for an input of the given size: a ByteHashSet,
+   * which is the fastest on one thread, unless the input is large enough
+   * that sharding it over several threads pays for starting them */
+  public static UniqueEngine auto(long bytes) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    UniqueEngine chosen = threads > 1 && bytes >= PARALLEL_BYTES
+        ? new Parallel(threads) : new Hash();
+    return new UniqueEngine() {
+      public String name() {
+        return AUTO;
+      }
+
+      public String label() {
+        return "Auto (" + chosen.label() + ")";
+      }
+
+      public long count(Path file, boolean mapped) throws IOException {
+        return chosen.count(file, mapped);
+      }
+    };
+  }
+
+  /** an engine that reads undecoded lines, through a ByteLineReader or a
+   * MappedLineReader */
+  abstract static class ByteEngine implements UniqueEngine {
+
+    abstract long count(LineReader r) throws IOException;
+
+    public long count(Path file, boolean mapped) throws IOException {
+      if (!mapped) {
+        try (InputStream in = new FileInputStream(file.toFile())) {
+          return count(new ByteLineReader(in));
+        }
+      }
+      try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+        return count(new MappedLineReader(ch));
+      }
+    }
+  }
+
+  /** an engine that works on lines decoded from UTF-8 as Strings. They are
+   * split by the same readers as for a ByteEngine, so that every engine
+   * sees the same lines. */
+  abstract static class StringEngine extends ByteEngine {
+
+    abstract long count(Iterator<String> lines);
+
+    long count(LineReader r) throws IOException {
+      try {
+        return count(Unique.lines(r));
+      } catch (UncheckedIOException exc) {
+        throw exc.getCause();
+      }
+    }
+  }
+
+  /** compares every line with every unique line before it */
+  static final class Naive extends StringEngine {
+    public String name() {
+      return "naive";
+    }
+
+    public String label() {
+      return "Naive";
+    }
+
+    long count(Iterator<String> lines) {
+      return Unique.naiveUnique(lines);
+    }
+  }
+
+  /** the AVL tree, optionally fronted by a Bloom filter sized for bloom
+   * unique lines and reporting its counters if stats is set */
+  static final class Avl extends StringEngine {
+    private final long bloom;
+    private final boolean stats;
+    private String details;
+
+    Avl(long bloom, boolean stats) {
+      this.bloom = bloom;
+      this.stats = stats;
+    }
+
+    public String name() {
+      return "avl";
+    }
+
+    public String label() {
+      return "AVL";
+    }
+
+    long count(Iterator<String> lines) {
+      AVL seen = new AVL();
+      if (stats) {
+        AVLStats.register(seen);
+      }
+      long count;
+      StringBuilder sb = new StringBuilder();
+      if (bloom > 0) {
+        BloomFilter filter = new BloomFilter(bloom, Unique.BLOOM_FPP);
+        Unique.FilterCounts counts = new Unique.FilterCounts();
+        count = Unique.avlUnique(lines, seen, filter, counts);
+        sb.append(counts.summary(filter));
+      } else {
+        count = Unique.avlUnique(lines, seen);
+      }
+      if (stats) {
+        sb.append(sb.length() > 0 ? "\n" : "").append(AVLStats.snapshot(seen));
+      }
+      details = sb.length() > 0 ? sb.toString() : null;
+      return count;
+    }
+
+    public String details() {
+      return details;
+    }
+  }
+
+  /** the AVL tree with nodes in parallel arrays */
+  static final class Array extends StringEngine {
+    public String name() {
+      return "array";
+    }
+
+    public String label() {
+      return "ArrayAVL";
+    }
+
+    long count(Iterator<String> lines) {
+      return Unique.arrayAvlUnique(lines);
+    }
+  }
+
+  /** the AVL tree of undecoded lines */
+  static final class Bytes extends ByteEngine {
+    public String name() {
+      return "bytes";
+    }
+
+    public String label() {
+      return "ByteAVL";
+    }
+
+    long count(LineReader r) throws IOException {
+      return Unique.byteAvlUnique(r);
+    }
+  }
+
+  /** an open-addressing hash set of undecoded lines */
+  static final class Hash extends ByteEngine {
+    public String name() {
+      return "hash";
+    }
+
+    public String label() {
+      return "ByteHashSet";
+    }
+
+    long count(LineReader r) throws IOException {
+      return Unique.hashUnique(r);
+    }
+  }
+
+  /** every line read, sorted on all cores, then scanned for runs */
+  static final class Sort extends ByteEngine {
+    public String name() {
+      return "sort";
+    }
+
+    public String label() {
+      return "Parallel sort";
+    }
+
+    long count(LineReader r) throws IOException {
+      return Unique.sortUnique(r);
+    }
+  }
+
+  /** ByteAVL shards on several threads. The file is always mapped. */
+  static final class Parallel implements UniqueEngine {
+    private final int threads;
+
+    Parallel(int threads) {
+      this.threads = threads;
+    }
+
+    public String name() {
+      return "parallel";
+    }
+
+    public String label() {
+      return "Parallel (" + threads + " threads)";
+    }
+
+    public long count(Path file, boolean mapped) throws IOException {
+      try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+        return ParallelUnique.count(ch, threads);
+      }
+    }
+  }
+}
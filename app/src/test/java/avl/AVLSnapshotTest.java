@@ -0,0 +1,123 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class AVLSnapshotTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static byte[] save(AVL a, boolean frontCoded) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AVLSnapshot.save(a, Channels.newChannel(out), frontCoded);
+    return out.toByteArray();
+  }
+
+  private static AVL load(byte[] b) throws IOException {
+    return AVLSnapshot.load(Channels.newChannel(new ByteArrayInputStream(b)));
+  }
+
+  private static ArrayList<String> words(AVL a) {
+    ArrayList<String> l = new ArrayList<String>();
+    for (String w : a) {
+      l.add(w);
+    }
+    return l;
+  }
+
+  private static AVL sample() {
+    AVL a = new AVL();
+    Random r = new Random(7);
+    StringBuilder big = new StringBuilder();
+    while (big.length() < 100000) {
+      big.append("long key ");
+    }
+    for (String w : new String[] {"", "caf\u00e9", "caf\u00e9s", "\ud83d\ude00",
+        "\uffff", big.toString(), big.toString() + "!"}) {
+      a.avlInsert(w);
+    }
+    for (int i = 0; i < 5000; i++) {
+      a.avlInsert("/common/prefix/" + r.nextInt(100000));
+    }
+    return a;
+  }
+
+  @Test
+  /** Test that both encodings load back the same words, balanced */
+  public void test00roundTrip() throws IOException {
+    AVL a = sample();
+    for (boolean frontCoded : new boolean[] {false, true}) {
+      AVL b = load(save(a, frontCoded));
+      assertEquals(a.getSize(), b.getSize());
+      assertEquals(words(a), words(b));
+      assertTrue(b.getHeight() <= a.getHeight());
+      assertEquals(b.getSize() - 1, b.rank(b.last()));
+    }
+    assertTrue(save(a, true).length < save(a, false).length);
+  }
+
+  @Test
+  /** Test saving and loading an empty tree */
+  public void test01empty() throws IOException {
+    AVL b = load(save(new AVL(), true));
+    assertEquals(0, b.getSize());
+    assertNull(b.root);
+  }
+
+  @Test
+  /** Test that damaged snapshots are rejected */
+  public void test02corrupt() throws IOException {
+    AVL a = new AVL();
+    for (String w : "moo quack neigh oink meow baa woof".split(" ")) {
+      a.avlInsert(w);
+    }
+    byte[] good = save(a, true);
+    for (int i = 0; i < good.length; i++) {
+      byte[] bad = good.clone();
+      bad[i] ^= 0x10;
+      try {
+        load(bad);
+        fail("flipped byte " + i + " was not noticed");
+      } catch (IOException exc) {
+        // expected
+      }
+    }
+    try {
+      load(Arrays.copyOf(good, good.length - 1));
+      fail("truncated snapshot was not noticed");
+    } catch (IOException exc) {
+      // expected
+    }
+  }
+
+  @Test
+  /** Test the file convenience methods */
+  public void test03file() throws IOException {
+    File f = File.createTempFile("avl", ".snapshot");
+    try {
+      TreeSet<String> expected = new TreeSet<String>();
+      AVL a = new AVL();
+      for (String w : "moo quack neigh oink meow baa woof".split(" ")) {
+        a.avlInsert(w);
+        expected.add(w);
+      }
+      a.save(f.toPath(), true);
+      assertEquals(new ArrayList<String>(expected), words(AVL.load(f.toPath())));
+    } finally {
+      f.delete();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeSet;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+/** the build runs this class alone with -Davl.stats=true, so the counters
+ * are on; every other test runs with them off */
+public class AVLStatsTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Before
+  public void setUp() {
+    assertTrue("run tests with -Davl.stats=true", AVLStats.ENABLED);
+    AVLStats.reset();
+  }
+
+  @Test
+  /** Test counters for single rotations and searches */
+  public void test00sortedInserts() {
+    AVL a = new AVL();
+    for (String w : "a b c d e f g".split(" ")) {
+      a.avlInsert(w);
+    }
+    // the first insertion into an empty tree does not descend
+    AVLStats.Snapshot s = AVLStats.snapshot(a);
+    assertEquals(14, s.getComparisons());
+    assertEquals(6, s.getDescents());
+    assertEquals(4, s.getSingleRotations());
+    assertEquals(0, s.getDoubleRotations());
+    assertTrue(s.getHeightUpdates() > 0);
+    assertEquals(2, s.getTreeHeight());
+    long[] h = s.getPathLengthHistogram();
+    assertEquals(1, h[1]);
+    assertEquals(2, h[2]);
+    assertEquals(3, h[3]);
+
+    assertNotNull(a.search("d"));
+    assertNull(a.search("zz"));
+    s = AVLStats.snapshot(a);
+    assertEquals(18, s.getComparisons());
+    assertEquals(8, s.getDescents());
+    assertEquals(2, s.getPathLengthHistogram()[1]);
+    assertTrue(s.toString().contains("rotations: 4 single, 0 double"));
+  }
+
+  @Test
+  /** Test that a zig-zag insertion counts one double rotation */
+  public void test01doubleRotation() {
+    AVL a = new AVL();
+    a.avlInsert("a");
+    a.avlInsert("c");
+    a.avlInsert("b");
+    AVLStats.Snapshot s = AVLStats.snapshot(a);
+    assertEquals(0, s.getSingleRotations());
+    assertEquals(1, s.getDoubleRotations());
+    assertEquals(1, s.getTreeHeight());
+
+    AVLStats.reset();
+    s = AVLStats.snapshot(a);
+    assertEquals(0, s.getComparisons());
+    assertEquals(0, s.getDoubleRotations());
+    assertEquals(0, s.getDescents());
+  }
+
+  @Test
+  /** Test that rebalance counts a double rotation once, as a double */
+  public void test05rebalanceDouble() {
+    AVL a = new AVL();
+    // bstInsert leaves heights to the caller
+    a.bstInsert("a"); a.search("a").height = 2;
+    a.bstInsert("c"); a.search("c").height = 1;
+    a.bstInsert("b"); a.search("b").height = 0;
+    AVLStats.reset();
+    a.rebalance(a.root);
+    AVLStats.Snapshot s = AVLStats.snapshot(a);
+    assertEquals("b", a.root.word);
+    assertEquals(0, s.getSingleRotations());
+    assertEquals(1, s.getDoubleRotations());
+
+    a = new AVL();
+    a.bstInsert("a"); a.search("a").height = 2;
+    a.bstInsert("b"); a.search("b").height = 1;
+    a.bstInsert("c"); a.search("c").height = 0;
+    AVLStats.reset();
+    a.rebalance(a.root);
+    s = AVLStats.snapshot(a);
+    assertEquals("b", a.root.word);
+    assertEquals(1, s.getSingleRotations());
+    assertEquals(0, s.getDoubleRotations());
+  }
+
+  @Test
+  /** Test reading the counters through JMX */
+  public void test02mbean() throws Exception {
+    AVL a = new AVL();
+    AVLStats.register(a);
+    for (String w : "moo quack neigh oink meow baa woof".split(" ")) {
+      a.avlInsert(w);
+    }
+    ObjectName name = new ObjectName("avl:type=AVLStats");
+    assertEquals(2, ManagementFactory.getPlatformMBeanServer()
+        .getAttribute(name, "TreeHeight"));
+    assertEquals(AVLStats.snapshot(a).getComparisons(),
+        ManagementFactory.getPlatformMBeanServer()
+        .getAttribute(name, "Comparisons"));
+  }
+
+  @Test
+  /** Test that lines a Bloom filter rules out never descend the tree */
+  public void test03bloomSkipsTree() {
+    Random r = new Random(18);
+    ArrayList<String> lines = new ArrayList<String>();
+    HashSet<String> expected = new HashSet<String>();
+    for (int i = 0; i < 3000; i++) {
+      String w = "line " + r.nextInt(1000);
+      lines.add(w);
+      expected.add(w);
+    }
+    AVL seen = new AVL();
+    Unique.FilterCounts counts = new Unique.FilterCounts();
+    assertEquals(expected.size(), Unique.avlUnique(lines.iterator(), seen,
+        new BloomFilter(1000, 0.01), counts));
+    assertEquals(expected.size(), seen.getSize());
+    assertEquals(lines.size(), counts.lines);
+    long descents = AVLStats.snapshot(seen).getDescents();
+    assertTrue(descents + " descents", descents < lines.size());
+    assertTrue(descents <= 2 * counts.lookups);
+    assertTrue(counts.summary(new BloomFilter(1000, 0.01))
+        .contains(counts.lookups + " looked up in the tree"));
+  }
+
+  @Test
+  /** Test exact counts through a filter too small to rule much out */
+  public void test04bloomFalsePositives() {
+    Random r = new Random(4);
+    ArrayList<String> lines = new ArrayList<String>();
+    HashSet<String> expected = new HashSet<String>();
+    for (int i = 0; i < 3000; i++) {
+      String w = Integer.toString(r.nextInt(2000));
+      lines.add(w);
+      expected.add(w);
+    }
+    AVL seen = new AVL();
+    Unique.FilterCounts counts = new Unique.FilterCounts();
+    assertEquals(expected.size(), Unique.avlUnique(lines.iterator(), seen,
+        new BloomFilter(10, 0.1), counts));
+    assertTrue(counts.falsePositives > 0);
+    assertEquals(expected.size(), counts.definitelyNew + counts.falsePositives);
+    assertEquals(expected.size(), seen.getSize());
+    assertEquals(new ArrayList<String>(new TreeSet<String>(expected)),
+        toList(seen));
+  }
+
+  private static ArrayList<String> toList(AVL a) {
+    ArrayList<String> words = new ArrayList<String>();
+    for (String w : a) {
+      words.add(w);
+    }
+    return words;
+  }
+}
@@ -3,7 +3,11 @@ package avl;
 import static org.junit.Assert.*;
 import org.junit.FixMethodOrder;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
 
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -595,6 +599,412 @@ public class AVLTest {
 
   }
 
+  @Test
+  /** Test avlInsertIfAbsent reports new and duplicate keys */
+  public void test63avlInsertIfAbsent() {
+    AVL a = new AVL();
+    assertTrue(a.avlInsertIfAbsent("moo"));
+    assertTrue(a.avlInsertIfAbsent("quack"));
+    assertTrue(a.avlInsertIfAbsent("marmot"));
+    assertFalse(a.avlInsertIfAbsent("moo"));
+    assertFalse(a.avlInsertIfAbsent("marmot"));
+    assertTrue(a.avlInsertIfAbsent("oink"));
+    assertFalse(a.avlInsertIfAbsent("oink"));
+    assertEquals(4, a.getSize());
+    checkWithHeight(a);
+    treeEquals(a, "moo marmot quack oink", "marmot moo oink quack", "marmot oink quack moo");
+  }
+
+  @Test
+  /** Test avlInsert keeps sorted input perfectly balanced */
+  public void test64avlInsertSorted() {
+    AVL a = new AVL();
+    for (int i = 0; i < 1023; i++) {
+      a.avlInsert(String.format("%04d", i));
+    }
+    assertEquals(1023, a.getSize());
+    assertEquals(9, a.root.height);
+    checkWithHeight(a);
+  }
+
+  @Test
+  /** Test bstInsert and search on a long degenerate chain, on a thread
+   * whose 64KB stack a recursive walk overflows within 2000 keys */
+  public void test11bstInsertSorted() throws InterruptedException {
+    AVL a = new AVL();
+    Throwable[] failure = new Throwable[1];
+    Thread t = new Thread(null, () -> {
+      try {
+        for (int i = 0; i < 5000; i++) {
+          a.bstInsert(String.format("%05d", i));
+        }
+        a.bstInsert("00000");
+        a.search("05000");
+      } catch (Throwable exc) {
+        failure[0] = exc;
+      }
+    }, "small stack", 1 << 16);
+    t.start();
+    t.join();
+    assertNull(failure[0]);
+    assertEquals(5000, a.getSize());
+    assertEquals(null, a.root.left);
+    assertEquals("04999", a.search("04999").word);
+    assertEquals(null, a.search("05000"));
+  }
+
+
+  /* check heights, subtree sizes and parent pointers, and that no node is
+   * out of balance */
+  private static void checkBalanced(AVL a) {
+    checkWithHeight(a);
+    checkBalanced(a.root);
+  }
+  private static void checkBalanced(AVL.Node n) {
+    if (n == null) {
+      return;
+    }
+    assertTrue(Math.abs(getHeight(n.left) - getHeight(n.right)) <= 1);
+    int leftSize = n.left != null ? n.left.subtreeSize : 0;
+    int rightSize = n.right != null ? n.right.subtreeSize : 0;
+    assertEquals(1 + leftSize + rightSize, n.subtreeSize);
+    checkBalanced(n.left);
+    checkBalanced(n.right);
+  }
+
+  @Test
+  /** Test remove of leaves, one-child nodes, two-child nodes and the root */
+  public void test70remove() {
+    AVL a = new AVL();
+    for (String w : "f d b a c e q n m l o p x s r y z".split(" ")) {
+      a.avlInsert(w);
+    }
+    assertFalse(a.remove("g"));
+    assertEquals(17, a.getSize());
+
+    // two children, successor deeper down; needs a rotation below it
+    assertTrue(a.remove("q"));
+    checkBalanced(a);
+    treeEquals(a, "m d b a c f e l r o n p y s x z", "a b c d e f l m n o p r s x y z", "a c b e l f d n p o x s z y r m");
+
+    // the root
+    assertTrue(a.remove("m"));
+    checkBalanced(a);
+    assertEquals("n", a.root.word);
+
+    // leaves, the last of which needs a rotation
+    assertTrue(a.remove("a"));
+    assertTrue(a.remove("c"));
+    assertTrue(a.remove("b"));
+    checkBalanced(a);
+    assertEquals(12, a.getSize());
+    treeEquals(a, "n f d e l r o p y s x z", "d e f l n o p r s x y z", "e d l f p o x s z y r n");
+
+    assertFalse(a.remove("m"));
+    assertEquals(12, a.getSize());
+  }
+
+  @Test
+  /** Test random inserts and removes stay balanced and match a TreeSet */
+  public void test71removeRandom() {
+    AVL a = new AVL();
+    TreeSet<String> expected = new TreeSet<String>();
+    Random r = new Random(241);
+    for (int i = 0; i < 5000; i++) {
+      String w = Integer.toString(r.nextInt(500));
+      if (r.nextBoolean()) {
+        assertEquals(expected.remove(w), a.remove(w));
+      } else {
+        assertEquals(expected.add(w), a.avlInsertIfAbsent(w));
+      }
+      assertEquals(expected.size(), a.getSize());
+    }
+    checkBalanced(a);
+    assertEquals(a.getSize(), a.root.subtreeSize);
+    assertEquals(String.join(" ", expected), inOrder(a.root));
+    for (String w : new TreeSet<String>(expected)) {
+      assertTrue(a.remove(w));
+    }
+    assertEquals(0, a.getSize());
+    assertEquals(null, a.root);
+  }
+
+  @Test
+  /** Test building a balanced tree from sorted keys */
+  public void test80fromSorted() {
+    AVL a = AVL.fromSorted(new String[] {"a", "b", "c", "d", "e", "f"});
+    assertEquals(6, a.getSize());
+    checkBalanced(a);
+    treeEquals(a, "c a b e d f", "a b c d e f", "b a d f e c");
+
+    a = AVL.fromSorted(Arrays.asList("moo", "oink", "quack").iterator());
+    checkBalanced(a);
+    treeEquals(a, "oink moo quack", "moo oink quack", "moo quack oink");
+    assertTrue(a.avlInsertIfAbsent("baa"));
+    checkBalanced(a);
+
+    a = AVL.fromSorted(new String[0]);
+    assertEquals(null, a.root);
+    assertEquals(0, a.getSize());
+
+    String[] big = new String[1000];
+    for (int i = 0; i < big.length; i++) {
+      big[i] = String.format("%04d", i);
+    }
+    a = AVL.fromSorted(big);
+    checkBalanced(a);
+    assertEquals(9, a.root.height);
+    assertEquals("0999", a.search("0999").word);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  /** Test building from unsorted keys is rejected */
+  public void test81fromSortedUnsorted() {
+    AVL.fromSorted(new String[] {"a", "c", "b"});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  /** Test building from duplicate keys is rejected */
+  public void test82fromSortedDuplicate() {
+    AVL.fromSorted(new String[] {"a", "b", "b"});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  /** Test a negative key count is rejected */
+  public void test83fromSortedNegativeCount() {
+    AVL.fromSorted(Arrays.asList("a", "b").iterator(), -1);
+  }
+
+  private static ArrayList<String> words(AVL.Node n) {
+    ArrayList<String> result = new ArrayList<String>();
+    addWords(n, result);
+    return result;
+  }
+  private static void addWords(AVL.Node n, ArrayList<String> result) {
+    if (n != null) {
+      addWords(n.left, result);
+      result.add(n.word);
+      addWords(n.right, result);
+    }
+  }
+
+  private static AVL treeOf(TreeSet<String> words) {
+    AVL a = new AVL();
+    for (String w : words) {
+      a.avlInsert(w);
+    }
+    return a;
+  }
+
+  @Test
+  /** Test split and join */
+  public void test90splitJoin() {
+    AVL a = AVL.fromSorted("a b c d e f g h i j".split(" "));
+    AVL[] parts = a.split("d");
+    assertEquals(0, a.getSize());
+    assertEquals(3, parts[0].getSize());
+    assertEquals(6, parts[1].getSize());
+    checkBalanced(parts[0]);
+    checkBalanced(parts[1]);
+    assertEquals("a b c", inOrder(parts[0].root));
+    assertEquals("e f g h i j", inOrder(parts[1].root));
+    assertEquals(1, parts[2].getSize());
+    assertEquals("d", inOrder(parts[2].root));
+
+    AVL j = AVL.join(parts[0], "d", parts[1]);
+    assertEquals(10, j.getSize());
+    checkBalanced(j);
+    assertEquals("a b c d e f g h i j", inOrder(j.root));
+
+    parts = j.split("dd");
+    assertEquals(4, parts[0].getSize());
+    assertEquals(6, parts[1].getSize());
+    assertEquals(0, parts[2].getSize());
+    assertNull(parts[2].root);
+  }
 
+  @Test(expected = IllegalArgumentException.class)
+  /** Test join rejects trees that are out of order */
+  public void test91joinUnordered() {
+    AVL.join(AVL.fromSorted(new String[] {"a", "m"}), "c",
+        AVL.fromSorted(new String[] {"x"}));
+  }
+
+  @Test
+  /** Test union, intersection and difference against TreeSet */
+  public void test92setOperations() {
+    Random r = new Random(241);
+    for (int round = 0; round < 14; round++) {
+      TreeSet<String> x = new TreeSet<String>();
+      TreeSet<String> y = new TreeSet<String>();
+      int nx = r.nextInt(round < 10 ? 50 : 10000);
+      int ny = r.nextInt(round < 10 ? 50 : 10000);
+      for (int i = 0; i < nx; i++) {
+        x.add(Integer.toString(r.nextInt(30000)));
+      }
+      for (int i = 0; i < ny; i++) {
+        y.add(Integer.toString(r.nextInt(30000)));
+      }
+
+      TreeSet<String> expected = new TreeSet<String>(x);
+      expected.addAll(y);
+      AVL u = AVL.union(treeOf(x), treeOf(y));
+      checkBalanced(u);
+      assertEquals(expected.size(), u.getSize());
+      assertEquals(new ArrayList<String>(expected), words(u.root));
+
+      AVL merged = treeOf(x);
+      AVL other = treeOf(y);
+      merged.addAll(other);
+      checkBalanced(merged);
+      assertEquals(expected.size(), merged.getSize());
+      assertEquals(new ArrayList<String>(expected), words(merged.root));
+      assertEquals(0, other.getSize());
+
+      expected = new TreeSet<String>(x);
+      expected.retainAll(y);
+      AVL i = AVL.intersection(treeOf(x), treeOf(y));
+      checkBalanced(i);
+      assertEquals(expected.size(), i.getSize());
+      assertEquals(new ArrayList<String>(expected), words(i.root));
+
+      expected = new TreeSet<String>(x);
+      expected.removeAll(y);
+      AVL d = AVL.difference(treeOf(x), treeOf(y));
+      checkBalanced(d);
+      assertEquals(expected.size(), d.getSize());
+      assertEquals(new ArrayList<String>(expected), words(d.root));
+    }
+  }
+
+  @Test
+  /** Test rank, select and countRange */
+  public void test95orderStatistics() {
+    AVL a = new AVL();
+    for (String w : "moo quack neigh oink meow baa woof".split(" ")) {
+      a.avlInsert(w);
+    }
+    assertEquals(0, a.rank("aardvark"));
+    assertEquals(0, a.rank("baa"));
+    assertEquals(3, a.rank("neigh"));
+    assertEquals(4, a.rank("nz"));
+    assertEquals(7, a.rank("zzz"));
+    assertEquals("baa", a.select(0));
+    assertEquals("neigh", a.select(3));
+    assertEquals("woof", a.select(6));
+    assertEquals(3, a.countRange("m", "o"));
+    assertEquals(0, a.countRange("o", "m"));
+    assertEquals(7, a.countRange("", "zzz"));
+    a.remove("moo");
+    assertEquals("neigh", a.select(2));
+    assertEquals(2, a.countRange("m", "o"));
+    a.bstInsert("cluck");
+    assertEquals("cluck", a.select(1));
+    assertEquals(7, a.root.subtreeSize);
+  }
 
+  @Test(expected = IndexOutOfBoundsException.class)
+  /** Test select rejects ranks outside the tree */
+  public void test96selectOutOfRange() {
+    AVL a = AVL.fromSorted(new String[] {"a", "b"});
+    a.select(2);
+  }
+
+  private static String join(Iterator<String> it) {
+    StringBuilder sb = new StringBuilder();
+    while (it.hasNext()) {
+      sb.append(it.next()).append(' ');
+    }
+    return sb.toString().trim();
+  }
+
+  @Test
+  /** Test floor, ceiling, higher, lower, first and last */
+  public void testA0navigation() {
+    AVL a = new AVL();
+    assertEquals(null, a.first());
+    assertEquals(null, a.last());
+    assertEquals(null, a.floor("m"));
+    for (String w : "moo quack neigh oink meow baa woof".split(" ")) {
+      a.avlInsert(w);
+    }
+    assertEquals("baa", a.first());
+    assertEquals("woof", a.last());
+    assertEquals("neigh", a.floor("neigh"));
+    assertEquals("moo", a.lower("neigh"));
+    assertEquals("neigh", a.floor("nz"));
+    assertEquals(null, a.floor("a"));
+    assertEquals("oink", a.ceiling("nz"));
+    assertEquals("neigh", a.ceiling("neigh"));
+    assertEquals("oink", a.higher("neigh"));
+    assertEquals(null, a.higher("woof"));
+    assertEquals(null, a.lower("baa"));
+  }
+
+  @Test
+  /** Test full and ranged in-order iteration */
+  public void testA1iterator() {
+    AVL a = new AVL();
+    assertFalse(a.iterator().hasNext());
+    for (String w : "moo quack neigh oink meow baa woof".split(" ")) {
+      a.avlInsert(w);
+    }
+    assertEquals(inOrder(a.root), join(a.iterator()));
+    assertEquals("meow moo neigh", join(a.iterator("m", "o")));
+    assertEquals("neigh oink quack", join(a.iterator("neigh", "woof")));
+    assertEquals("baa meow", join(a.iterator(null, "moo")));
+    assertEquals("quack woof", join(a.iterator("p", null)));
+    assertEquals("", join(a.iterator("x", null)));
+    StringBuilder sb = new StringBuilder();
+    for (String w : a) {
+      sb.append(w.charAt(0));
+    }
+    assertEquals("bmmnoqw", sb.toString());
+  }
+
+  @Test
+  /** Test occurrence counting and the most frequent words */
+  public void testA2mostFrequent() {
+    AVL a = new AVL(true);
+    String text = "moo baa moo oink baa moo woof neigh oink baa quack moo";
+    for (String w : text.split(" ")) {
+      a.avlInsertIfAbsent(w);
+    }
+    assertEquals(4, a.occurrences("moo"));
+    assertEquals(1, a.occurrences("woof"));
+    assertEquals(0, a.occurrences("meow"));
+    StringBuilder sb = new StringBuilder();
+    for (AVL.CountedNode n : a.mostFrequent(4)) {
+      sb.append(n.word).append('=').append(n.count).append(' ');
+    }
+    // ties are broken in word order
+    assertEquals("moo=4 baa=3 oink=2 neigh=1", sb.toString().trim());
+    assertEquals(6, a.mostFrequent(100).size());
+    assertEquals(0, a.mostFrequent(0).size());
+    checkBalanced(a);
+
+    // removal keeps the counts of the words that stay
+    a.remove("baa");
+    checkBalanced(a);
+    assertEquals("moo", a.mostFrequent(1).get(0).word);
+    assertEquals(2, a.occurrences("oink"));
+    assertEquals(0, new AVL().occurrences("x"));
+  }
+
+  @Test
+  /** Test that the counters are off unless asked for, and then count
+   * nothing */
+  public void testA3statsOff() {
+    assertFalse(AVLStats.ENABLED);
+    AVL a = new AVL();
+    for (String w : "a b c d e f g".split(" ")) {
+      a.avlInsert(w);
+    }
+    a.search("d");
+    AVLStats.Snapshot s = AVLStats.snapshot(a);
+    assertEquals(0, s.getComparisons());
+    assertEquals(0, s.getDescents());
+    assertEquals(0, s.getSingleRotations());
+    assertTrue(s.toString().startsWith("AVL stats are off"));
+  }
 }
@@ -0,0 +1,61 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class ArrayAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static String inOrder(ArrayAVL a) {
+    StringBuilder sb = new StringBuilder();
+    a.inOrder(w -> sb.append(w).append(' '));
+    return sb.toString().trim();
+  }
+
+  @Test
+  /** Test insertion gives the same tree shape as AVL */
+  public void test00insert() {
+    ArrayAVL a = new ArrayAVL(1);
+    String[] words = {"a", "b", "c", "d", "e", "f", "q", "x", "y", "z",
+        "m", "n", "l", "o", "s", "r", "q", "p"};
+    for (String w : words) {
+      a.avlInsert(w);
+    }
+    assertEquals(17, a.getSize());
+    assertEquals("f", a.word(a.getRoot()));
+    assertEquals("a b c d e f l m n o p q r s x y z", inOrder(a));
+    assertEquals(ArrayAVL.NIL, a.parent(a.getRoot()));
+    TreeChecks.check(a);
+    assertEquals("p", a.word(a.search("p")));
+    assertEquals(ArrayAVL.NIL, a.search("g"));
+  }
+
+  @Test
+  /** Test random inserts and removes against a TreeSet */
+  public void test10insertRemove() {
+    ArrayAVL a = new ArrayAVL();
+    TreeSet<String> expected = new TreeSet<String>();
+    Random r = new Random(241);
+    for (int i = 0; i < 20000; i++) {
+      String w = Integer.toString(r.nextInt(2000));
+      if (r.nextInt(3) == 0) {
+        assertEquals(expected.remove(w), a.remove(w));
+      } else {
+        assertEquals(expected.add(w), a.avlInsertIfAbsent(w));
+      }
+      assertEquals(expected.size(), a.getSize());
+    }
+    TreeChecks.check(a);
+    ArrayList<String> seen = new ArrayList<String>();
+    a.inOrder(seen::add);
+    assertEquals(new ArrayList<String>(expected), seen);
+  }
+}
@@ -0,0 +1,50 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class BloomFilterTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test that added strings are always reported and others mostly not */
+  public void test00falsePositives() {
+    int n = 20000;
+    BloomFilter f = new BloomFilter(n, 0.01);
+    for (int i = 0; i < n; i++) {
+      f.add("in " + i);
+    }
+    for (int i = 0; i < n; i++) {
+      assertTrue(f.mightContain("in " + i));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < n; i++) {
+      if (f.mightContain("out " + i)) {
+        falsePositives++;
+      }
+    }
+    // about 200 expected; allow for bad luck but not for a broken hash
+    assertTrue("false positives: " + falsePositives, falsePositives < 400);
+    assertEquals(0.01, f.expectedFpp(), 0.005);
+  }
+
+  @Test
+  /** Test addIfAbsent on a repeated string */
+  public void test01addIfAbsent() {
+    BloomFilter f = new BloomFilter(100, 0.01);
+    assertFalse(f.mightContain("moo"));
+    assertTrue(f.addIfAbsent("moo"));
+    assertFalse(f.addIfAbsent("moo"));
+    assertTrue(f.mightContain("moo"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  /** Test that a false positive rate of 1 is rejected */
+  public void test02badRate() {
+    new BloomFilter(100, 1.0);
+  }
+}
@@ -0,0 +1,94 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class ByteAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static byte[] utf8(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  /** Test insert and search on byte keys */
+  public void test00insert() {
+    ByteAVL a = new ByteAVL(1);
+    assertTrue(a.insertIfAbsent(utf8("moo")));
+    assertTrue(a.insertIfAbsent(utf8("quack")));
+    assertTrue(a.insertIfAbsent(utf8("mo")));
+    assertFalse(a.insertIfAbsent(utf8("moo")));
+    assertEquals(3, a.getSize());
+    assertArrayEquals(utf8("moo"), a.key(a.search(utf8("moo"))));
+    assertEquals(ByteAVL.NIL, a.search(utf8("m")));
+  }
+
+  @Test
+  /** Test keys are ordered as unsigned bytes */
+  public void test10unsignedOrder() {
+    ByteAVL a = new ByteAVL();
+    a.insertIfAbsent(utf8("\u00e9"));
+    a.insertIfAbsent(utf8("z"));
+    a.insertIfAbsent(utf8("a"));
+    ArrayList<String> seen = new ArrayList<String>();
+    a.inOrder(k -> seen.add(new String(k, StandardCharsets.UTF_8)));
+    assertEquals("[a, z, \u00e9]", seen.toString());
+  }
+
+  @Test
+  /** Test inserting the lines of a reader straight from its buffer */
+  public void test20lines() throws IOException {
+    ByteAVL a = new ByteAVL();
+    ByteLineReader r = new ByteLineReader(new ByteArrayInputStream(
+        utf8("moo\r\nquack\n\nmoo\noink")));
+    assertEquals(5, r.forEachLine(a::insertIfAbsent));
+    assertEquals(4, a.getSize());
+  }
+
+  @Test
+  /** Test front coding and prefix skipping on keys with long shared
+   * prefixes, checked against a TreeSet */
+  public void test40sharedPrefixes() {
+    ByteAVL a = new ByteAVL();
+    TreeSet<String> expected = new TreeSet<String>();
+    Random r = new Random(5);
+    long keyBytes = 0;
+    for (int i = 0; i < 20000; i++) {
+      String w = "2026-10-18T12:" + r.nextInt(60) + ":" + r.nextInt(60)
+          + " host-" + r.nextInt(4) + " request " + r.nextInt(3000);
+      if (i % 7 == 0) {
+        w = w.substring(0, r.nextInt(w.length()));
+      }
+      assertEquals(expected.add(w), a.insertIfAbsent(utf8(w)));
+      if (expected.contains(w) && a.search(utf8(w)) == ByteAVL.NIL) {
+        fail("lost " + w);
+      }
+    }
+    for (String w : expected) {
+      keyBytes += w.length();
+    }
+    assertEquals(expected.size(), a.getSize());
+    ArrayList<String> seen = new ArrayList<String>();
+    a.inOrder(k -> seen.add(new String(k, StandardCharsets.UTF_8)));
+    assertEquals(new ArrayList<String>(expected), seen);
+    for (int i = 0; i < 2000; i++) {
+      String w = "2026-10-18T12:" + r.nextInt(60) + ":" + r.nextInt(60)
+          + " host-" + r.nextInt(5) + " request " + r.nextInt(4000);
+      assertEquals(expected.contains(w), a.search(utf8(w)) != ByteAVL.NIL);
+    }
+    // most of each timestamp and host is stored only once
+    assertTrue(a.arenaBytes() + " of " + keyBytes, a.arenaBytes() < keyBytes / 3);
+  }
+
+}
@@ -0,0 +1,69 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class ByteHashSetTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  /** Test inserting and finding a few keys, including the empty key */
+  public void test00insert() {
+    ByteHashSet s = new ByteHashSet();
+    assertTrue(s.insertIfAbsent(bytes("moo")));
+    assertTrue(s.insertIfAbsent(bytes("")));
+    assertTrue(s.insertIfAbsent(bytes("mo")));
+    assertFalse(s.insertIfAbsent(bytes("moo")));
+    assertFalse(s.insertIfAbsent(bytes("")));
+    assertEquals(3, s.getSize());
+    assertEquals(5, s.arenaBytes());
+    assertTrue(s.contains(bytes("mo")));
+    assertFalse(s.contains(bytes("m")));
+    assertArrayEquals(bytes("mo"), s.key(2));
+  }
+
+  @Test
+  /** Test keys given as a slice of a larger buffer, direct or not */
+  public void test01slices() {
+    ByteHashSet s = new ByteHashSet();
+    ByteBuffer heap = ByteBuffer.wrap(bytes("xxbaa\nmoo\nbaa"));
+    ByteBuffer direct = ByteBuffer.allocateDirect(heap.capacity());
+    direct.put(heap.duplicate());
+    assertTrue(s.insertIfAbsent(heap, 2, 3));
+    assertTrue(s.insertIfAbsent(direct, 6, 3));
+    assertFalse(s.insertIfAbsent(direct, 10, 3));
+    assertFalse(s.insertIfAbsent(heap, 6, 3));
+    assertTrue(s.contains(bytes("baa")));
+    assertEquals(2, s.getSize());
+  }
+
+  @Test
+  /** Test growing the table and arena many times against a HashSet */
+  public void test02grow() {
+    Random r = new Random(24);
+    ByteHashSet s = new ByteHashSet(1);
+    HashSet<String> expected = new HashSet<String>();
+    for (int i = 0; i < 100000; i++) {
+      String w = Integer.toString(r.nextInt(50000), 36);
+      assertEquals(expected.add(w), s.insertIfAbsent(bytes(w)));
+    }
+    assertEquals(expected.size(), s.getSize());
+    for (String w : expected) {
+      assertTrue(s.contains(bytes(w)));
+    }
+    assertFalse(s.contains(bytes("not base 36")));
+  }
+}
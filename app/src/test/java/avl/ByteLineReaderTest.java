@@ -0,0 +1,55 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class ByteLineReaderTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static byte[] utf8(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  /** Test line splitting, CRLF handling and a final unterminated line */
+  public void test00forEachLine() throws IOException {
+    byte[] input = utf8("moo\r\nquack\n\nmoo\noink");
+    ByteLineReader r = new ByteLineReader(new ByteArrayInputStream(input));
+    ArrayList<String> lines = new ArrayList<String>();
+    long n = r.forEachLine((buf, off, len) -> {
+      byte[] b = new byte[len];
+      for (int i = 0; i < len; i++) {
+        b[i] = buf.get(off + i);
+      }
+      lines.add(new String(b, StandardCharsets.UTF_8));
+    });
+    assertEquals(5, n);
+    assertEquals("[moo, quack, , moo, oink]", lines.toString());
+  }
+
+  @Test
+  /** Test reading lines one at a time, after one longer than the buffer */
+  public void test01nextLine() throws IOException {
+    char[] big = new char[100000];
+    Arrays.fill(big, 'x');
+    ByteLineReader r = new ByteLineReader(new ByteArrayInputStream(
+        utf8(new String(big) + "\n" + "moo\r\nquack\n\nmoo\noink")));
+    ArrayList<String> lines = new ArrayList<String>();
+    while (r.nextLine()) {
+      lines.add(r.line());
+    }
+    assertEquals(new String(big), lines.remove(0));
+    assertEquals("[moo, quack, , moo, oink]", lines.toString());
+    assertFalse(r.nextLine());
+  }
+}
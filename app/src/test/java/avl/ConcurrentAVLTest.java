@@ -0,0 +1,100 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class ConcurrentAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test single-threaded inserts and ordered queries */
+  public void test00insert() {
+    ConcurrentAVL a = new ConcurrentAVL();
+    assertEquals(null, a.first());
+    for (String w : "moo quack neigh oink meow baa moo".split(" ")) {
+      a.avlInsertIfAbsent(w);
+    }
+    assertEquals(6, a.getSize());
+    assertTrue(a.contains("oink"));
+    assertFalse(a.contains("woof"));
+    assertEquals("baa", a.first());
+    assertEquals("neigh", a.ceiling("n"));
+    assertEquals("oink", a.higher("neigh"));
+    assertEquals(null, a.higher("quack"));
+    StringBuilder sb = new StringBuilder();
+    for (Iterator<String> it = a.iterator(); it.hasNext(); ) {
+      sb.append(it.next()).append(' ');
+    }
+    assertEquals("baa meow moo neigh oink quack", sb.toString().trim());
+  }
+
+  @Test
+  /** Test sorted inserts leave a balanced tree */
+  public void test10sorted() {
+    ConcurrentAVL a = new ConcurrentAVL();
+    for (int i = 0; i < 1023; i++) {
+      a.avlInsertIfAbsent(String.format("%04d", i));
+    }
+    assertEquals(1023, a.getSize());
+    assertEquals(9, a.height());
+  }
+
+  @Test
+  /** Test overlapping inserts from several threads */
+  public void test20threads() throws InterruptedException {
+    ConcurrentAVL a = new ConcurrentAVL();
+    int threads = 4;
+    // a failed assertion only ends its own worker, so keep it to rethrow
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    ArrayList<Thread> workers = new ArrayList<Thread>();
+    TreeSet<String> expected = new TreeSet<String>();
+    for (int t = 0; t < threads; t++) {
+      Random r = new Random(t);
+      ArrayList<String> words = new ArrayList<String>();
+      for (int i = 0; i < 20000; i++) {
+        words.add(Integer.toString(r.nextInt(30000)));
+      }
+      expected.addAll(words);
+      workers.add(new Thread(() -> {
+        try {
+          for (String w : words) {
+            a.avlInsertIfAbsent(w);
+            assertTrue(w, a.contains(w));
+          }
+        } catch (Throwable exc) {
+          failure.compareAndSet(null, exc);
+        }
+      }));
+    }
+    for (Thread t : workers) {
+      t.start();
+    }
+    for (Thread t : workers) {
+      t.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError("worker failed", failure.get());
+    }
+    assertEquals(expected.size(), a.getSize());
+    for (String w : expected) {
+      assertTrue(w, a.contains(w));
+    }
+    ArrayList<String> seen = new ArrayList<String>();
+    for (Iterator<String> it = a.iterator(); it.hasNext(); ) {
+      seen.add(it.next());
+    }
+    assertEquals(new ArrayList<String>(expected), seen);
+    // an AVL tree with n nodes is at most about 1.44 log2(n) high
+    assertTrue(a.height() <= 1.45 * Math.log(a.getSize() + 2) / Math.log(2));
+  }
+}
@@ -0,0 +1,60 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class ExternalUniqueTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test counting and sorting across many spilled runs */
+  public void test00spill() throws IOException {
+    Random r = new Random(3);
+    ArrayList<String> lines = new ArrayList<String>();
+    TreeSet<String> expected = new TreeSet<String>();
+    for (int i = 0; i < 20000; i++) {
+      String w = "line " + r.nextInt(8000);
+      lines.add(w);
+      expected.add(w);
+    }
+    Path dir = Files.createTempDirectory("external");
+    try {
+      ArrayList<String> sorted = new ArrayList<String>();
+      // room for about 100 lines per run
+      long budget = 100 * (ExternalUnique.LINE_OVERHEAD + 2 * 9);
+      assertEquals(expected.size(),
+          ExternalUnique.count(lines.iterator(), budget, dir, sorted::add));
+      assertEquals(new ArrayList<String>(expected), sorted);
+      // the runs are gone
+      assertEquals(0, dir.toFile().list().length);
+    } finally {
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  /** Test that input within the budget never touches the disk */
+  public void test01inMemory() throws IOException {
+    Path dir = new File("no such directory").toPath();
+    ArrayList<String> sorted = new ArrayList<String>();
+    assertEquals(3, ExternalUnique.count(
+        Arrays.asList("moo", "baa", "moo", "oink").iterator(), 1 << 20, dir,
+        sorted::add));
+    assertEquals(Arrays.asList("baa", "moo", "oink"), sorted);
+    assertEquals(0, ExternalUnique.count(
+        new ArrayList<String>().iterator(), 1 << 20, dir, null));
+  }
+}
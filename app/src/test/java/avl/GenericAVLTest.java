@@ -0,0 +1,58 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class GenericAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test natural ordering and a custom comparator */
+  public void test00comparator() {
+    GenericAVL<Integer> a = new GenericAVL<Integer>();
+    GenericAVL<String> b = new GenericAVL<String>(
+        Comparator.comparing(String::length).thenComparing(Comparator.reverseOrder()));
+    for (String w : "moo quack neigh oink meow baa moo".split(" ")) {
+      a.avlInsert(w.length());
+      b.avlInsert(w);
+    }
+    ArrayList<Object> seen = new ArrayList<Object>();
+    a.inOrder(seen::add);
+    assertEquals("[3, 4, 5]", seen.toString());
+    seen.clear();
+    b.inOrder(seen::add);
+    assertEquals("[moo, baa, oink, meow, quack, neigh]", seen.toString());
+    assertEquals("oink", b.key(b.search("oink")));
+    assertEquals(IndexedAVL.NIL, b.search("woof"));
+  }
+
+  @Test
+  /** Test random inserts and removes against a TreeSet */
+  public void test10insertRemove() {
+    GenericAVL<Long> a = new GenericAVL<Long>();
+    TreeSet<Long> expected = new TreeSet<Long>();
+    Random r = new Random(17);
+    for (int i = 0; i < 20000; i++) {
+      long k = r.nextInt(2000) - 1000;
+      if (r.nextInt(3) == 0) {
+        assertEquals(expected.remove(k), a.remove(k));
+      } else {
+        assertEquals(expected.add(k), a.avlInsertIfAbsent(k));
+      }
+      assertEquals(expected.size(), a.getSize());
+    }
+    TreeChecks.check(a);
+    ArrayList<Long> seen = new ArrayList<Long>();
+    a.inOrder(seen::add);
+    assertEquals(new ArrayList<Long>(expected), seen);
+  }
+}
@@ -0,0 +1,80 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static byte[] line(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  /** Test estimates at small and large cardinalities, with repeats */
+  public void test00estimate() {
+    HyperLogLog h = new HyperLogLog();
+    assertEquals(0, h.estimate());
+    for (int i = 0; i < 100; i++) {
+      h.add(line("line " + i));
+      h.add(line("line " + i));
+    }
+    // linear counting is near exact this low
+    assertEquals(100, h.estimate(), 3);
+    for (int i = 100; i < 200000; i++) {
+      h.add(line("line " + i));
+    }
+    // within four standard errors
+    assertEquals(200000, h.estimate(), 200000 * 4 * h.standardError());
+    assertEquals(1 << 14, h.sizeInBytes());
+  }
+
+  @Test
+  /** Test that merged sketches estimate the union */
+  public void test01merge() {
+    HyperLogLog a = new HyperLogLog(12);
+    HyperLogLog b = new HyperLogLog(12);
+    for (int i = 0; i < 30000; i++) {
+      a.add(line("x" + i));
+      b.add(line("x" + (i + 20000)));
+    }
+    a.merge(b);
+    assertEquals(50000, a.estimate(), 50000 * 4 * a.standardError());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  /** Test that sketches of different precisions cannot be merged */
+  public void test02mergeMismatch() {
+    new HyperLogLog(10).merge(new HyperLogLog(11));
+  }
+
+  @Test
+  /** Test sketching a file on several threads */
+  public void test03parallelSketch() throws IOException {
+    File f = File.createTempFile("hll", ".txt");
+    try {
+      try (PrintWriter out = new PrintWriter(f, "UTF-8")) {
+        for (int i = 0; i < 50000; i++) {
+          out.println("word " + (i % 20000));
+        }
+      }
+      try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+        HyperLogLog h = ParallelUnique.sketch(ch, 3, 14);
+        assertEquals(20000, h.estimate(), 20000 * 4 * h.standardError());
+      }
+    } finally {
+      f.delete();
+    }
+  }
+}
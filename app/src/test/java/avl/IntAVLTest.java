@@ -0,0 +1,95 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class IntAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static ArrayList<Integer> keys(IntAVL a) {
+    ArrayList<Integer> seen = new ArrayList<Integer>();
+    a.inOrder(seen::add);
+    return seen;
+  }
+
+  @Test
+  /** Test keys whose difference overflows an int, which a comparison by
+   * subtraction would put in the wrong order */
+  public void test00overflow() {
+    IntAVL a = new IntAVL(1);
+    int[] keys = {1, Integer.MIN_VALUE, -1, Integer.MAX_VALUE,
+        Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1, 0, -2, 2};
+    for (int k : keys) {
+      assertTrue(a.avlInsertIfAbsent(k));
+    }
+    assertFalse(a.avlInsertIfAbsent(Integer.MIN_VALUE));
+    assertFalse(a.avlInsertIfAbsent(Integer.MAX_VALUE));
+    assertEquals("[" + Integer.MIN_VALUE + ", " + (Integer.MIN_VALUE + 1)
+        + ", -2, -1, 0, 1, 2, " + (Integer.MAX_VALUE - 1) + ", "
+        + Integer.MAX_VALUE + "]", keys(a).toString());
+    for (int k : keys) {
+      assertEquals(k, a.key(a.search(k)));
+    }
+    assertEquals(IndexedAVL.NIL, a.search(3));
+    assertEquals(IndexedAVL.NIL, a.search(Integer.MIN_VALUE + 2));
+    TreeChecks.check(a);
+  }
+
+  @Test
+  /** Test removing the extremes, including the root, until empty */
+  public void test01removeExtremes() {
+    IntAVL a = new IntAVL();
+    a.avlInsert(Integer.MAX_VALUE);
+    a.avlInsert(Integer.MIN_VALUE);
+    a.avlInsert(0);
+    assertTrue(a.remove(Integer.MIN_VALUE));
+    assertFalse(a.remove(Integer.MIN_VALUE));
+    assertEquals("[0, " + Integer.MAX_VALUE + "]", keys(a).toString());
+    assertTrue(a.remove(0));
+    assertTrue(a.remove(Integer.MAX_VALUE));
+    assertEquals(0, a.getSize());
+    assertEquals(IndexedAVL.NIL, a.getRoot());
+    assertEquals(IndexedAVL.NIL, a.search(0));
+  }
+
+  @Test
+  /** Test keys spread over the whole int range against a TreeSet, half of
+   * them pinned near the ends where differences overflow */
+  public void test10fullRange() {
+    IntAVL a = new IntAVL();
+    TreeSet<Integer> expected = new TreeSet<Integer>();
+    Random r = new Random(31);
+    ArrayList<Integer> inserted = new ArrayList<Integer>();
+    for (int i = 0; i < 20000; i++) {
+      int k;
+      switch (r.nextInt(3)) {
+        case 0:
+          k = r.nextInt();
+          break;
+        case 1:
+          k = Integer.MIN_VALUE + r.nextInt(100);
+          break;
+        default:
+          k = Integer.MAX_VALUE - r.nextInt(100);
+      }
+      if (r.nextInt(4) == 0 && !inserted.isEmpty()) {
+        k = inserted.get(r.nextInt(inserted.size()));
+        assertEquals(expected.remove(k), a.remove(k));
+      } else {
+        assertEquals(expected.add(k), a.avlInsertIfAbsent(k));
+        inserted.add(k);
+      }
+    }
+    assertEquals(expected.size(), a.getSize());
+    TreeChecks.check(a);
+    assertEquals(new ArrayList<Integer>(expected), keys(a));
+  }
+}
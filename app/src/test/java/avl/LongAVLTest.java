@@ -0,0 +1,54 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class LongAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test ordering at the extremes of the long range */
+  public void test00extremes() {
+    LongAVL a = new LongAVL(1);
+    long[] keys = {0, Long.MAX_VALUE, Long.MIN_VALUE, -1, 1, Long.MAX_VALUE};
+    for (long k : keys) {
+      a.avlInsert(k);
+    }
+    assertEquals(5, a.getSize());
+    ArrayList<Long> seen = new ArrayList<Long>();
+    a.inOrder(seen::add);
+    assertEquals("[" + Long.MIN_VALUE + ", -1, 0, 1, " + Long.MAX_VALUE + "]",
+        seen.toString());
+    assertEquals(Long.MIN_VALUE, a.key(a.search(Long.MIN_VALUE)));
+    assertEquals(IndexedAVL.NIL, a.search(2));
+  }
+
+  @Test
+  /** Test random inserts and removes against a TreeSet */
+  public void test10insertRemove() {
+    LongAVL a = new LongAVL();
+    TreeSet<Long> expected = new TreeSet<Long>();
+    Random r = new Random(29);
+    for (int i = 0; i < 20000; i++) {
+      long k = r.nextInt(2000) * 1000000007L;
+      if (r.nextInt(3) == 0) {
+        assertEquals(expected.remove(k), a.remove(k));
+      } else {
+        assertEquals(expected.add(k), a.avlInsertIfAbsent(k));
+      }
+      assertEquals(expected.size(), a.getSize());
+    }
+    TreeChecks.check(a);
+    ArrayList<Long> seen = new ArrayList<Long>();
+    a.inOrder(seen::add);
+    assertEquals(new ArrayList<Long>(expected), seen);
+  }
+}
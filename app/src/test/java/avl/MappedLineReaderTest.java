@@ -0,0 +1,68 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class MappedLineReaderTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static byte[] utf8(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  /** Test the mapped reader across window boundaries and long lines */
+  public void test00windows() throws IOException {
+    Path tmp = Files.createTempFile("lines", ".txt");
+    try {
+      Files.write(tmp, utf8("moo\r\nquack\n\nmoo\nabcdefghijklmnop\noink"));
+      try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ)) {
+        MappedLineReader r = new MappedLineReader(ch, 4);
+        ArrayList<String> lines = new ArrayList<String>();
+        while (r.nextLine()) {
+          lines.add(r.line());
+        }
+        assertEquals("[moo, quack, , moo, abcdefghijklmnop, oink]", lines.toString());
+      }
+    } finally {
+      Files.delete(tmp);
+    }
+  }
+
+  @Test
+  /** Test reading only a byte range, as the parallel counters do */
+  public void test01range() throws IOException {
+    Path tmp = Files.createTempFile("lines", ".txt");
+    try {
+      Files.write(tmp, utf8("moo\nquack\nneigh\noink\n"));
+      try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ)) {
+        // from the start of "quack" to the end of "neigh\n"
+        MappedLineReader r = new MappedLineReader(ch, 4, 16, 8);
+        ArrayList<String> lines = new ArrayList<String>();
+        long n = r.forEachLine((buf, off, len) -> {
+          byte[] b = new byte[len];
+          for (int i = 0; i < len; i++) {
+            b[i] = buf.get(off + i);
+          }
+          lines.add(new String(b, StandardCharsets.UTF_8));
+        });
+        assertEquals(2, n);
+        assertEquals("[quack, neigh]", lines.toString());
+      }
+    } finally {
+      Files.delete(tmp);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class ParallelUniqueTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test the parallel count matches a HashSet for several thread counts */
+  public void test00count() throws IOException {
+    Random r = new Random(241);
+    StringBuilder sb = new StringBuilder();
+    HashSet<String> expected = new HashSet<String>();
+    for (int i = 0; i < 20000; i++) {
+      String line = Integer.toString(r.nextInt(5000), 36);
+      expected.add(line);
+      sb.append(line).append('\n');
+    }
+    sb.append("last");
+    expected.add("last");
+
+    Path tmp = Files.createTempFile("lines", ".txt");
+    try {
+      Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+      try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ)) {
+        for (int threads = 1; threads <= 5; threads++) {
+          assertEquals(expected.size(), ParallelUnique.count(ch, threads));
+        }
+        long[] bounds = ParallelUnique.split(ch, 7);
+        assertEquals(0, bounds[0]);
+        assertEquals(ch.size(), bounds[bounds.length - 1]);
+      }
+    } finally {
+      Files.delete(tmp);
+    }
+  }
+}
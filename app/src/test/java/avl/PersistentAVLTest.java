@@ -0,0 +1,210 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class PersistentAVLTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  /* check order, balance, heights and sizes below n. Returns the height. */
+  private static int check(PersistentAVL.Node n, String lo, String hi) {
+    if (n == null) {
+      return -1;
+    }
+    assertTrue(lo == null || lo.compareTo(n.word) < 0);
+    assertTrue(hi == null || hi.compareTo(n.word) > 0);
+    int l = check(n.left, lo, n.word);
+    int r = check(n.right, n.word, hi);
+    assertTrue(Math.abs(l - r) <= 1);
+    assertEquals(1 + Math.max(l, r), n.height);
+    assertEquals(1 + PersistentAVL.size(n.left) + PersistentAVL.size(n.right), n.size);
+    return n.height;
+  }
+
+  private static String words(Iterable<String> t) {
+    StringBuilder sb = new StringBuilder();
+    for (String w : t) {
+      sb.append(w).append(' ');
+    }
+    return sb.toString().trim();
+  }
+
+  /* add every node below n to nodes */
+  private static void collect(PersistentAVL.Node n,
+                              IdentityHashMap<PersistentAVL.Node, Boolean> nodes) {
+    if (n != null) {
+      nodes.put(n, true);
+      collect(n.left, nodes);
+      collect(n.right, nodes);
+    }
+  }
+
+  @Test
+  /** Test inserts, removes and ordered queries */
+  public void test00insertRemove() {
+    PersistentAVL a = new PersistentAVL();
+    assertEquals(-1, a.getHeight());
+    assertEquals(null, a.snapshot().first());
+    for (String w : "moo quack neigh oink meow baa moo".split(" ")) {
+      a.avlInsertIfAbsent(w);
+    }
+    assertEquals(6, a.getSize());
+    assertFalse(a.avlInsertIfAbsent("oink"));
+    assertTrue(a.contains("oink"));
+    assertFalse(a.contains("woof"));
+    PersistentAVL.Snapshot s = a.snapshot();
+    assertEquals("baa", s.first());
+    assertEquals("quack", s.last());
+    assertEquals("neigh", s.ceiling("n"));
+    assertEquals("moo", s.floor("n"));
+    assertEquals(null, s.ceiling("r"));
+    assertEquals(null, s.floor("a"));
+    assertEquals(3, s.rank("neigh"));
+    assertEquals("oink", s.select(4));
+    assertEquals("baa meow moo neigh oink quack", words(a));
+    assertTrue(a.remove("moo"));
+    assertFalse(a.remove("moo"));
+    assertTrue(a.remove("baa"));
+    assertEquals("meow neigh oink quack", words(a));
+    check(a.snapshot().root, null, null);
+  }
+
+  @Test
+  /** Test that a snapshot is unchanged by later writes */
+  public void test01snapshot() {
+    PersistentAVL a = new PersistentAVL();
+    for (int i = 0; i < 100; i++) {
+      a.avlInsertIfAbsent(String.format("%03d", i));
+    }
+    PersistentAVL.Snapshot before = a.snapshot();
+    for (int i = 0; i < 100; i += 2) {
+      a.remove(String.format("%03d", i));
+    }
+    a.avlInsertIfAbsent("new");
+    assertEquals(100, before.getSize());
+    assertTrue(before.contains("000"));
+    assertFalse(before.contains("new"));
+    assertEquals("099", before.last());
+    int n = 0;
+    for (String w : before) {
+      assertEquals(String.format("%03d", n++), w);
+    }
+    assertEquals(100, n);
+    assertEquals(51, a.getSize());
+    assertFalse(a.contains("000"));
+    check(before.root, null, null);
+    check(a.snapshot().root, null, null);
+  }
+
+  @Test
+  /** Test random operations against a TreeSet, checking balance */
+  public void test02random() {
+    Random r = new Random(25);
+    PersistentAVL a = new PersistentAVL();
+    TreeSet<String> expected = new TreeSet<String>();
+    for (int i = 0; i < 20000; i++) {
+      String w = Integer.toString(r.nextInt(2000));
+      if (r.nextInt(3) == 0) {
+        assertEquals(expected.remove(w), a.remove(w));
+      } else {
+        assertEquals(expected.add(w), a.avlInsertIfAbsent(w));
+      }
+    }
+    check(a.snapshot().root, null, null);
+    assertEquals(expected.size(), a.getSize());
+    assertEquals(new ArrayList<String>(expected), Arrays.asList(words(a).split(" ")));
+  }
+
+  @Test
+  /** Test that a write copies only about a path's worth of nodes */
+  public void test03sharing() {
+    PersistentAVL a = new PersistentAVL();
+    Random r = new Random(5);
+    for (int i = 0; i < 10000; i++) {
+      a.avlInsertIfAbsent(Integer.toString(r.nextInt()));
+    }
+    for (int i = 0; i < 100; i++) {
+      PersistentAVL.Snapshot before = a.snapshot();
+      if (i % 2 == 0) {
+        a.avlInsertIfAbsent(Integer.toString(r.nextInt()));
+      } else {
+        a.remove(before.select(r.nextInt(before.getSize())));
+      }
+      IdentityHashMap<PersistentAVL.Node, Boolean> old =
+          new IdentityHashMap<PersistentAVL.Node, Boolean>();
+      IdentityHashMap<PersistentAVL.Node, Boolean> both =
+          new IdentityHashMap<PersistentAVL.Node, Boolean>();
+      collect(before.root, old);
+      collect(before.root, both);
+      collect(a.snapshot().root, both);
+      int copied = both.size() - old.size();
+      assertTrue(copied + " nodes copied", copied <= 2 * (before.getHeight() + 2));
+    }
+  }
+
+  @Test
+  /** Test readers iterating snapshots while two writers insert */
+  public void test04concurrent() throws InterruptedException {
+    PersistentAVL a = new PersistentAVL();
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    ArrayList<Thread> writers = new ArrayList<Thread>();
+    for (int t = 0; t < 2; t++) {
+      int offset = t;
+      writers.add(new Thread(() -> {
+        for (int i = offset; i < 20000; i += 2) {
+          a.avlInsertIfAbsent(String.format("%05d", i));
+        }
+      }));
+    }
+    ArrayList<Thread> readers = new ArrayList<Thread>();
+    for (int t = 0; t < 2; t++) {
+      readers.add(new Thread(() -> {
+        try {
+          while (!done.get()) {
+            PersistentAVL.Snapshot s = a.snapshot();
+            String prev = null;
+            int n = 0;
+            for (Iterator<String> it = s.iterator(); it.hasNext(); n++) {
+              String w = it.next();
+              assertTrue(prev == null || prev.compareTo(w) < 0);
+              prev = w;
+            }
+            assertEquals(s.getSize(), n);
+          }
+        } catch (Throwable exc) {
+          failure.set(exc);
+        }
+      }));
+    }
+    for (Thread t : readers) {
+      t.start();
+    }
+    for (Thread t : writers) {
+      t.start();
+    }
+    for (Thread t : writers) {
+      t.join();
+    }
+    done.set(true);
+    for (Thread t : readers) {
+      t.join();
+    }
+    assertNull(failure.get());
+    assertEquals(20000, a.getSize());
+    check(a.snapshot().root, null, null);
+  }
+}
@@ -0,0 +1,46 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class StreamUniqueTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  private static ByteArrayInputStream in(String s) {
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  /** Test that only first occurrences pass through, in input order */
+  public void test00filter() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int n = StreamUnique.filter(in("moo\nbaa\nmoo\r\noink\nbaa\n\u00e9\n\n\n\u00e9"),
+        out, new PrintStream(err, true, "UTF-8"), 0, 0);
+    assertEquals(5, n);
+    assertEquals("moo\nbaa\noink\n\u00e9\n\n", out.toString("UTF-8"));
+    assertEquals("", err.toString("UTF-8"));
+  }
+
+  @Test
+  /** Test the running count every N lines */
+  public void test01progress() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    PrintStream progress = new PrintStream(err, true, "UTF-8");
+    StreamUnique.filter(in("a\nb\na\nc\nc\n"), out, progress, 2, 0);
+    String nl = System.lineSeparator();
+    assertEquals("distinct: 2 of 2 lines" + nl + "distinct: 3 of 4 lines" + nl
+        + "distinct: 3 of 5 lines" + nl, err.toString("UTF-8"));
+  }
+}
@@ -0,0 +1,44 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+/** invariant checks shared by the tests of the IndexedAVL trees */
+final class TreeChecks {
+
+  private TreeChecks() { }
+
+  /** check parent links, heights and AVL balance throughout a, and that it
+   * has getSize() nodes */
+  static void check(IndexedAVL a) {
+    int root = a.getRoot();
+    if (root != IndexedAVL.NIL) {
+      assertEquals(IndexedAVL.NIL, a.parent(root));
+    }
+    check(a, root);
+    assertEquals(a.getSize(), count(a, root));
+  }
+
+  /** check parent links, heights and AVL balance below n; returns the
+   * height of n */
+  static int check(IndexedAVL a, int n) {
+    if (n == IndexedAVL.NIL) {
+      return -1;
+    }
+    if (a.left(n) != IndexedAVL.NIL) {
+      assertEquals(n, a.parent(a.left(n)));
+    }
+    if (a.right(n) != IndexedAVL.NIL) {
+      assertEquals(n, a.parent(a.right(n)));
+    }
+    int lh = check(a, a.left(n));
+    int rh = check(a, a.right(n));
+    assertEquals(1 + Math.max(lh, rh), a.height(n));
+    assertTrue(Math.abs(lh - rh) <= 1);
+    return a.height(n);
+  }
+
+  /* the number of nodes below n */
+  private static int count(IndexedAVL a, int n) {
+    return n == IndexedAVL.NIL ? 0 : 1 + count(a, a.left(n)) + count(a, a.right(n));
+  }
+}
@@ -0,0 +1,122 @@
+package avl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import org.junit.Test;
+
+public class UniqueEngineTest {
+  @Rule
+  public Timeout globalTimeout = Timeout.seconds(3); // 3sec timeout
+
+  @Test
+  /** Test that every engine agrees on the count, streamed and mapped */
+  public void test00agree() throws IOException {
+    Random r = new Random(7);
+    StringBuilder sb = new StringBuilder();
+    HashSet<String> expected = new HashSet<String>();
+    for (int i = 0; i < 1000; i++) {
+      String w = "host" + r.nextInt(40) + " \u00e9v\u00e9nement " + r.nextInt(30);
+      expected.add(w);
+      sb.append(w).append('\n');
+    }
+    // no newline after the last line
+    sb.append("last");
+    expected.add("last");
+    Path file = Files.createTempFile("engines", ".txt");
+    try {
+      Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+      for (String name : UniqueEngines.NAMES) {
+        UniqueEngine e = name.equals(UniqueEngines.AUTO)
+            ? UniqueEngines.auto(Files.size(file)) : UniqueEngines.named(name);
+        assertEquals(name, e.name());
+        assertEquals(name, expected.size(), e.count(file, false));
+        assertEquals(name, expected.size(), e.count(file, true));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  /** Test that every engine splits lines only at newlines, so that
+   * carriage returns inside a line and Unicode line separators do not end
+   * it, and a CRLF counts as one newline */
+  public void test01separators() throws IOException {
+    String input = "moo\r\nmoo\nmoo\u2028baa\nmoo\rbaa\nmoo\u2028baa\r\n"
+        + "\u0085\n\n\r\n";
+    Path file = Files.createTempFile("separators", ".txt");
+    try {
+      Files.write(file, input.getBytes(StandardCharsets.UTF_8));
+      for (String name : UniqueEngines.NAMES) {
+        UniqueEngine e = name.equals(UniqueEngines.AUTO)
+            ? UniqueEngines.auto(Files.size(file)) : UniqueEngines.named(name);
+        // moo, moo\u2028baa, moo\rbaa, \u0085 and the empty line
+        assertEquals(name, 5, e.count(file, false));
+        assertEquals(name, 5, e.count(file, true));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  /** Test that the top and external modes split and decode lines the same
+   * way as the engines */
+  public void test01bmodeSeparators() throws IOException {
+    String input = "moo\r\nmoo\nmoo\u2028baa\nmoo\rbaa\nmoo\u2028baa\r\n"
+        + "\u0085\n\n\r\n";
+    Path file = Files.createTempFile("separators", ".txt");
+    Path out = Files.createTempFile("separators", ".out");
+    try {
+      Files.write(file, input.getBytes(StandardCharsets.UTF_8));
+      assertEquals(5, Unique.printTop(file, 1));
+      assertEquals(5, Unique.externalUnique(file, 1 << 20, null));
+      assertEquals(5, Unique.externalUnique(file, 1 << 20, out.toString()));
+      // read whole, as a reader would split moo\rbaa
+      String nl = System.lineSeparator();
+      assertEquals(nl + "moo" + nl + "moo\rbaa" + nl + "moo\u2028baa" + nl
+          + "\u0085" + nl, new String(Files.readAllBytes(out), StandardCharsets.UTF_8));
+    } finally {
+      Files.delete(file);
+      Files.delete(out);
+    }
+  }
+
+  @Test
+  /** Test which engines auto picks and that names are checked */
+  public void test02select() {
+    assertEquals("Auto (ByteHashSet)", UniqueEngines.auto(1 << 20).label());
+    String big = UniqueEngines.auto(UniqueEngines.PARALLEL_BYTES).label();
+    assertEquals(Runtime.getRuntime().availableProcessors() > 1
+        ? "Auto (Parallel (" + Runtime.getRuntime().availableProcessors()
+            + " threads))" : "Auto (ByteHashSet)", big);
+    assertNull(UniqueEngines.named("avll"));
+    assertNull(UniqueEngines.named(UniqueEngines.AUTO));
+    for (String name : UniqueEngines.NAMES) {
+      if (!name.equals(UniqueEngines.AUTO)) {
+        assertEquals(name, UniqueEngines.named(name).name());
+      }
+    }
+  }
+
+  @Test
+  /** Test the unsigned byte order the sort engine uses */
+  public void test03compareBytes() {
+    byte[] a = {1, 2};
+    byte[] b = {1, 2, 0};
+    byte[] c = {(byte) 0x80};
+    assertTrue(Unique.compareBytes(a, b) < 0);
+    assertTrue(Unique.compareBytes(b, a) > 0);
+    assertTrue(Unique.compareBytes(a, c) < 0);
+    assertEquals(0, Unique.compareBytes(b, b.clone()));
+  }
+}